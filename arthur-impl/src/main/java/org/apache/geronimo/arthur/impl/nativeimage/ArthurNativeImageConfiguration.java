@@ -21,6 +21,8 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -31,78 +33,130 @@ public class ArthurNativeImageConfiguration {
     @GraalCommandPart(order = 0)
     private String nativeImage = "native-image";
 
-    @GraalCommandPart(order = 1, passthrough = true)
+    @GraalCommandPart(order = 1, template = "-J-Xmx%s")
+    private String maxHeap;
+
+    @GraalCommandPart(order = 2, template = "-J-XX:ActiveProcessorCount=%d")
+    private Integer activeProcessorCount;
+
+    @GraalCommandPart(order = 3, template = "-H:NumberOfThreads=%d")
+    private Integer numberOfThreads;
+
+    @GraalCommandPart(order = 4, passthrough = true)
     private Collection<String> customOptions = new ArrayList<>();
 
-    @GraalCommandPart(order = 2, joiner = "${File.pathSeparator}", preParts = "-classpath")
+    @GraalCommandPart(order = 5, joiner = "${File.pathSeparator}", preParts = "-classpath")
     private Collection<String> classpath = new ArrayList<>();
 
-    @GraalCommandPart(order = 3, joiner = ",", template = "-H:DynamicProxyConfigurationFiles=%s")
+    @GraalCommandPart(order = 6, joiner = ",", template = "-H:DynamicProxyConfigurationFiles=%s")
     private Collection<String> dynamicProxyConfigurationFiles = new ArrayList<>();
 
-    @GraalCommandPart(order = 4, joiner = ",", template = "-H:ReflectionConfigurationFiles=%s")
+    @GraalCommandPart(order = 7, joiner = ",", template = "-H:ReflectionConfigurationFiles=%s")
     private Collection<String> reflectionConfigurationFiles = new ArrayList<>();
 
-    @GraalCommandPart(order = 5, joiner = ",", template = "-H:ResourceConfigurationFiles=%s")
+    @GraalCommandPart(order = 8, joiner = ",", template = "-H:ResourceConfigurationFiles=%s")
     private Collection<String> resourcesConfigurationFiles = new ArrayList<>();
 
-    @GraalCommandPart(order = 6, joiner = ",", template = "-H:IncludeResourceBundles=%s")
+    @GraalCommandPart(order = 9, joiner = ",", template = "-H:IncludeResourceBundles=%s")
     private Collection<String> includeResourceBundles = new ArrayList<>();
 
-    @GraalCommandPart(order = 7, joiner = ",", template = "--initialize-at-run-time=%s")
+    @GraalCommandPart(order = 10, joiner = ",", template = "--initialize-at-run-time=%s")
     private Collection<String> initializeAtRunTime = new ArrayList<>();
 
-    @GraalCommandPart(order = 8, joiner = ",", template = "--initialize-at-build-time=%s")
+    @GraalCommandPart(order = 11, joiner = ",", template = "--initialize-at-build-time=%s")
     private Collection<String> initializeAtBuildTime = new ArrayList<>();
 
-    @GraalCommandPart(order = 9, template = "-H:MaxRuntimeCompileMethods=%d")
+    @GraalCommandPart(order = 12, template = "-H:MaxRuntimeCompileMethods=%d")
     private int maxRuntimeCompileMethods = 1000;
 
-    @GraalCommandPart(order = 10, template = "-H:+EnforceMaxRuntimeCompileMethods")
+    @GraalCommandPart(order = 13, template = "-H:+EnforceMaxRuntimeCompileMethods")
     private boolean enforceMaxRuntimeCompileMethods = true;
 
-    @GraalCommandPart(order = 11, template = "-H:+AddAllCharsets")
+    @GraalCommandPart(order = 14, template = "-H:+AddAllCharsets")
     private boolean addAllCharsets = true;
 
-    @GraalCommandPart(order = 12, template = "-H:+ReportExceptionStackTraces")
+    @GraalCommandPart(order = 15, template = "-H:+ReportExceptionStackTraces")
     private boolean reportExceptionStackTraces = true;
 
-    @GraalCommandPart(order = 13, template = "-H:+TraceClassInitialization")
+    @GraalCommandPart(order = 16, template = "-H:+TraceClassInitialization")
     private boolean traceClassInitialization = true;
 
-    @GraalCommandPart(order = 14, template = "-H:+PrintClassInitialization")
+    @GraalCommandPart(order = 17, template = "-H:+PrintClassInitialization")
     private boolean printClassInitialization = false;
 
-    @GraalCommandPart(order = 15, template = "--%s-fallback")
+    @GraalCommandPart(order = 18, template = "--%s-fallback")
     private FallbackMode fallbackMode = FallbackMode.no;
 
-    @GraalCommandPart(order = 16, template = "--static")
+    @GraalCommandPart(order = 19, template = "--static")
     private boolean buildStaticImage = true;
 
-    @GraalCommandPart(order = 17, template = "--allow-incomplete-classpath")
+    @GraalCommandPart(order = 20, template = "--allow-incomplete-classpath")
     private boolean allowIncompleteClasspath = true;
 
-    @GraalCommandPart(order = 18, template = "--report-unsupported-elements-at-runtime")
+    @GraalCommandPart(order = 21, template = "--report-unsupported-elements-at-runtime")
     private boolean reportUnsupportedElementsAtRuntime = true;
 
-    @GraalCommandPart(order = 19, template = "--enable-all-security-services")
+    @GraalCommandPart(order = 22, template = "--enable-all-security-services")
     private boolean enableAllSecurityServices = true;
 
-    @GraalCommandPart(order = 20, template = "--no-server")
+    @GraalCommandPart(order = 23, template = "--no-server")
     private boolean noServer = true;
 
-    @GraalCommandPart(order = 21)
+    @GraalCommandPart(order = 24)
     private String main;
 
-    @GraalCommandPart(order = 22)
+    @GraalCommandPart(order = 25)
     private String output;
 
     private boolean inheritIO = true;
 
+    private boolean autoSizing;
+
+    /**
+     * Should a native-image build server be used and managed (restarted when GraalVM or the classpath change).
+     */
+    private boolean buildServer;
+
+    private Collection<String> outOfMemoryRetries = new ArrayList<>();
+
+    /**
+     * Should native-image arguments be passed through an argument file (`@file`), auto enables it when native-image supports it.
+     */
+    private ArgFileMode argFile = ArgFileMode.auto;
+
+    /**
+     * @return a copy of this configuration, collections are copied too so the copy can be customized for another binary.
+     */
+    public ArthurNativeImageConfiguration copy() {
+        final ArthurNativeImageConfiguration copy = new ArthurNativeImageConfiguration();
+        for (final Field field : ArthurNativeImageConfiguration.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
+            try {
+                final Object value = field.get(this);
+                field.set(copy, Collection.class.isInstance(value) ? new ArrayList<>(Collection.class.cast(value)) : value);
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (copy.customOptions == null) { // callers append binary specific options
+            copy.customOptions = new ArrayList<>();
+        }
+        return copy;
+    }
+
     public enum FallbackMode {
         no, auto, force
     }
 
+    public enum ArgFileMode {
+        auto, always, never
+    }
+
     @Target(FIELD)
     @Retention(RUNTIME)
     public @interface GraalCommandPart {
@@ -17,21 +17,43 @@
 package org.apache.geronimo.arthur.impl.nativeimage;
 
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.geronimo.arthur.impl.nativeimage.generator.ConfigurationGenerator;
+import org.apache.geronimo.arthur.impl.nativeimage.graal.AutoSizing;
+import org.apache.geronimo.arthur.impl.nativeimage.graal.BuildServer;
 import org.apache.geronimo.arthur.impl.nativeimage.graal.CommandGenerator;
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.NativeImageMetrics;
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.NativeImageOutputParser;
+import org.apache.geronimo.arthur.impl.nativeimage.pgo.PgoConfiguration;
+import org.apache.geronimo.arthur.impl.nativeimage.pgo.ProfileGuidedOptimization;
 import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessExecutor;
+import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessGovernor;
 import org.apache.geronimo.arthur.spi.ArthurExtension;
 
 import lombok.Builder;
@@ -52,11 +74,167 @@ public class ArthurNativeImageExecutor implements Runnable {
                 configuration.extensionProperties);
         configurationGenerator.run();
 
-        final List<String> command = new CommandGenerator().generate(configuration.configuration);
-        new ProcessExecutor(
-                configuration.configuration.isInheritIO(),
-                command)
-                .run();
+        if (configuration.nativeImageResolver != null) {
+            configuration.configuration.setNativeImage(configuration.nativeImageResolver.get());
+        }
+        if (configuration.configuration.isAutoSizing()) {
+            new AutoSizing().apply(configuration.configuration);
+        }
+        if (configuration.configuration.isBuildServer() && configuration.workingDirectory != null) {
+            new BuildServer(configuration.workingDirectory.resolve(BuildServer.STATE)).prepare(configuration.configuration);
+        }
+
+        if (configuration.targets == null || configuration.targets.isEmpty()) {
+            build(configuration.configuration);
+            return;
+        }
+
+        final List<ArthurNativeImageConfiguration> builds = configuration.targets.stream()
+                .map(target -> {
+                    final ArthurNativeImageConfiguration copy = configuration.configuration.copy();
+                    copy.setMain(target.getMain());
+                    copy.setOutput(target.getOutput());
+                    ofNullable(target.getCustomOptions()).ifPresent(copy.getCustomOptions()::addAll);
+                    return copy;
+                })
+                .collect(toList());
+        final int threads = configuration.maxConcurrentNativeImages > 0 ?
+                Math.min(configuration.maxConcurrentNativeImages, builds.size()) : builds.size();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "arthur-native-image-" + counter.incrementAndGet());
+                thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+                return thread;
+            }
+        });
+        try {
+            final List<Future<?>> futures = builds.stream()
+                    .map(it -> pool.submit(() -> build(it)))
+                    .collect(toList());
+            RuntimeException error = null;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    final RuntimeException cause = RuntimeException.class.isInstance(e.getCause()) ?
+                            RuntimeException.class.cast(e.getCause()) : new IllegalStateException(e.getCause());
+                    if (error == null) {
+                        error = cause;
+                    } else {
+                        error.addSuppressed(cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void build(final ArthurNativeImageConfiguration nativeImageConfiguration) {
+        if (configuration.pgo != null) {
+            new ProfileGuidedOptimization(configuration.pgo, this::buildImage).run(nativeImageConfiguration);
+        } else {
+            buildImage(nativeImageConfiguration);
+        }
+    }
+
+    private void buildImage(final ArthurNativeImageConfiguration nativeImageConfiguration) {
+        final List<String> retries = ofNullable(nativeImageConfiguration.getOutOfMemoryRetries())
+                .<List<String>>map(ArrayList::new)
+                .orElseGet(Collections::emptyList);
+        final boolean captureOutput = configuration.metricsListener != null || !retries.isEmpty();
+        final int attempts = retries.size() + 1;
+        final CommandGenerator commandGenerator = new CommandGenerator();
+        final boolean useArgFile = configuration.workingDirectory != null && useArgFile(commandGenerator, nativeImageConfiguration);
+        long waitTime = 0;
+        for (int attempt = 1; ; attempt++) {
+            final List<String> command = commandGenerator.generate(nativeImageConfiguration);
+            final List<String> processCommand = !useArgFile ? command : commandGenerator.toArgFileCommand(command,
+                    // output is the last part, see CommandGenerator
+                    configuration.workingDirectory.resolve(Paths.get(command.get(command.size() - 1)).getFileName() + ".args"));
+            final NativeImageOutputParser parser = new NativeImageOutputParser();
+            final AtomicBoolean outOfMemory = new AtomicBoolean();
+            try (final ProcessGovernor.Permit permit = ProcessGovernor.get().acquire(
+                    nativeImageConfiguration.getMaxHeap(), configuration.maxConcurrentNativeImages)) {
+                if (permit.getWaitTime() > 0) {
+                    log.info("Waited {}ms before launching native-image for {}", permit.getWaitTime(), nativeImageConfiguration.getMain());
+                    waitTime += permit.getWaitTime();
+                }
+                new ProcessExecutor(
+                        nativeImageConfiguration.isInheritIO(),
+                        processCommand,
+                        !captureOutput ? null : parser.andThen(line -> {
+                            if (line.contains("OutOfMemoryError") || line.contains("GC overhead limit exceeded")) {
+                                outOfMemory.set(true);
+                            }
+                        }))
+                        .run();
+            } catch (final ProcessExecutor.InvalidExitCodeException iece) {
+                if (attempt == attempts || !(outOfMemory.get() || iece.getExitCode() == 137 /*SIGKILL, likely OOM killer*/)) {
+                    throw iece;
+                }
+                final String[] step = retries.get(attempt - 1).split(":");
+                nativeImageConfiguration.setMaxHeap(step[0].trim());
+                if (step.length > 1) {
+                    nativeImageConfiguration.setNumberOfThreads(Integer.parseInt(step[1].trim()));
+                }
+                log.warn("native-image ran out of memory (attempt {}/{}, exit code {}), retrying with -J-Xmx{} and {} threads",
+                        attempt, attempts, iece.getExitCode(), nativeImageConfiguration.getMaxHeap(),
+                        ofNullable(nativeImageConfiguration.getNumberOfThreads()).map(String::valueOf).orElse("default"));
+                continue;
+            }
+
+            if (attempt > 1) {
+                log.info("native-image succeeded at attempt {}/{} with -J-Xmx{} and {} threads",
+                        attempt, attempts, nativeImageConfiguration.getMaxHeap(),
+                        ofNullable(nativeImageConfiguration.getNumberOfThreads()).map(String::valueOf).orElse("default"));
+            }
+            if (configuration.metricsListener != null) {
+                final NativeImageMetrics metrics = toMetrics(parser, command);
+                metrics.setAttempt(attempt);
+                metrics.setMaxHeap(nativeImageConfiguration.getMaxHeap());
+                metrics.setNumberOfThreads(nativeImageConfiguration.getNumberOfThreads());
+                metrics.setWaitTime(waitTime);
+                configuration.metricsListener.accept(metrics);
+            }
+            return;
+        }
+    }
+
+    private boolean useArgFile(final CommandGenerator commandGenerator, final ArthurNativeImageConfiguration nativeImageConfiguration) {
+        switch (ofNullable(nativeImageConfiguration.getArgFile()).orElse(ArthurNativeImageConfiguration.ArgFileMode.never)) {
+            case always:
+                return true;
+            case auto:
+                return commandGenerator.supportsArgFile(nativeImageConfiguration.getNativeImage());
+            default:
+                return false;
+        }
+    }
+
+    private NativeImageMetrics toMetrics(final NativeImageOutputParser parser, final List<String> command) {
+        final NativeImageMetrics metrics = parser.getMetrics();
+        // main and output are always the last command parts, see CommandGenerator
+        metrics.setMain(command.get(command.size() - 2));
+        metrics.setOutput(command.get(command.size() - 1));
+        final Path output = Paths.get(metrics.getOutput());
+        if (Files.exists(output)) {
+            try {
+                metrics.setImageSize(Files.size(output));
+            } catch (final IOException e) {
+                log.warn("Can't compute image size of '{}': {}", output, e.getMessage());
+            }
+        }
+        return metrics;
     }
 
     protected Iterable<ArthurExtension> loadExtensions() {
@@ -75,5 +253,24 @@ public class ArthurNativeImageExecutor implements Runnable {
         private final Function<Class<?>, Collection<Class<?>>> implementationFinder;
         private final ArthurNativeImageConfiguration configuration;
         private final Map<String, String> extensionProperties;
+        private final Consumer<NativeImageMetrics> metricsListener;
+        private final int maxConcurrentNativeImages;
+
+        /**
+         * If set, the configuration is generated once and each target is built from it
+         * (main, output and additional custom options are overriden per target), potentially concurrently.
+         */
+        private final Collection<NativeImageTarget> targets;
+
+        /**
+         * If set, each binary is built with profile guided optimization (instrumented build, workload, optimized build).
+         */
+        private final PgoConfiguration pgo;
+
+        /**
+         * If set, called once the configuration is generated to set the native-image binary to use.
+         * It enables to install GraalVM concurrently to the classpath scanning and extensions execution.
+         */
+        private final Supplier<String> nativeImageResolver;
     }
 }
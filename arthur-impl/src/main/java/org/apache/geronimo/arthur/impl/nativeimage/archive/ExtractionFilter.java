@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.archive;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * Selects the archive entries to extract with include/exclude globs on the path relative to the distribution root
+ * (`*` matches a path segment, `**` any number of segments).
+ */
+public class ExtractionFilter implements Predicate<String> {
+    /**
+     * Extracts the whole archive.
+     */
+    public static final ExtractionFilter ALL = new ExtractionFilter(singletonList("**"), emptyList());
+
+    /**
+     * What native-image and gu need plus cacerts and JVM natives (JDK 8 and 11 layouts),
+     * sources, samples, documentation, tools and languages are skipped.
+     */
+    public static final List<String> DEFAULT_INCLUDES = asList(
+            "release", "bin/**", "lib/**", "conf/**", "include/**", "jre/bin/**", "jre/lib/**");
+    public static final List<String> DEFAULT_EXCLUDES = asList("**/src.zip", "**/visualvm/**");
+
+    @Getter
+    private final Collection<String> includes;
+
+    @Getter
+    private final Collection<String> excludes;
+
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+
+    public ExtractionFilter(final Collection<String> includes, final Collection<String> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.includePatterns = includes.stream().map(ExtractionFilter::toPattern).collect(toList());
+        this.excludePatterns = excludes.stream().map(ExtractionFilter::toPattern).collect(toList());
+    }
+
+    public static ExtractionFilter defaults() {
+        return new ExtractionFilter(DEFAULT_INCLUDES, DEFAULT_EXCLUDES);
+    }
+
+    public boolean isSelective() {
+        return !includes.contains("**") || !excludes.isEmpty();
+    }
+
+    /**
+     * @param path the entry path relative to the distribution root, directories end with a slash.
+     * @return true if the entry must be extracted.
+     */
+    @Override
+    public boolean test(final String path) {
+        final String normalized = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return includePatterns.stream().anyMatch(p -> p.matcher(normalized).matches()) &&
+                excludePatterns.stream().noneMatch(p -> p.matcher(normalized).matches());
+    }
+
+    static Pattern toPattern(final String pattern) {
+        final boolean folder = pattern.endsWith("/**"); // "folder/**" also matches "folder" itself
+        final String glob = folder ? pattern.substring(0, pattern.length() - "/**".length()) : pattern;
+        final StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            final char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') { // **/ matches zero or more folders
+                        regex.append("(?:.*/)?");
+                        i += 3;
+                    } else {
+                        regex.append(".*");
+                        i += 2;
+                    }
+                    continue;
+                }
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            i++;
+        }
+        if (folder) {
+            regex.append("(?:/.*)?");
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -27,14 +27,25 @@ import static java.util.stream.Collectors.toSet;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -45,30 +56,94 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class Extractor {
+    // bigger entries are written by the reading thread to bound the memory used by pending writes
+    private static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+
+    private final int threads;
+    private final ExtractionFilter filter;
+
+    public Extractor() {
+        this(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @param threads number of threads writing the extracted files, 1 means a sequential extraction.
+     */
+    public Extractor(final int threads) {
+        this(threads, ExtractionFilter.ALL);
+    }
+
+    /**
+     * @param threads number of threads writing the extracted files, 1 means a sequential extraction.
+     * @param filter  which entries to extract.
+     */
+    public Extractor(final int threads, final ExtractionFilter filter) {
+        this.threads = Math.max(1, threads);
+        this.filter = filter;
+    }
+
     public void unpack(final Path archive, final Path exploded) {
+        unpack(archive, exploded, filter);
+    }
+
+    /**
+     * Extracts the entries matching a filter, it is typically used to extract lazily what a selective extraction skipped.
+     *
+     * @param archive  the archive.
+     * @param exploded where to extract it.
+     * @param filter   entries to extract.
+     */
+    public void unpack(final Path archive, final Path exploded, final ExtractionFilter filter) {
+        if (archive.getFileName().toString().endsWith(".zip")) {
+            unpackZip(archive, exploded, filter);
+            return;
+        }
+        try (final InputStream fileStream = new BufferedInputStream(Files.newInputStream(archive))) {
+            unpack(fileStream, false, exploded, filter);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't unpack graal archive", e);
+        }
+    }
+
+    /**
+     * Unpacks an archive from a stream (enables to extract while downloading for example).
+     * Entries are read sequentially but written concurrently.
+     * Symbolic links are created relative to their location so the exploded folder can be moved.
+     *
+     * @param fileStream the archive stream, it is closed once read.
+     * @param isZip true for a zip, false for a tar.gz.
+     * @param exploded where to extract the archive.
+     */
+    public void unpack(final InputStream fileStream, final boolean isZip, final Path exploded) {
+        unpack(fileStream, isZip, exploded, filter);
+    }
+
+    private void unpack(final InputStream fileStream, final boolean isZip, final Path exploded, final ExtractionFilter filter) {
+        final long start = System.nanoTime();
+        final Predicate<ArchiveEntry> isLink = isZip ?
+                e -> ZipArchiveEntry.class.cast(e).isUnixSymlink() :
+                e -> TarArchiveEntry.class.cast(e).isSymbolicLink();
+        final BiFunction<ArchiveInputStream, ArchiveEntry, String> linkPath = isZip ?
+                (a, e) -> { // todo: validate this with cygwin
+                    try {
+                        return new BufferedReader(new InputStreamReader(a)).readLine();
+                    } catch (final IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                } :
+                (a, e) -> TarArchiveEntry.class.cast(e).getLinkName();
+        final Map<Path, Path> linksToCopy = new ConcurrentHashMap<>();
+        final Map<Path, Path> linksToRetry = new ConcurrentHashMap<>();
+        final AtomicInteger files = new AtomicInteger();
+        final Writers writers = new Writers();
         try {
-            final boolean isZip = archive.getFileName().toString().endsWith(".zip");
-            final InputStream fileStream = new BufferedInputStream(Files.newInputStream(archive));
-            final Predicate<ArchiveEntry> isLink = isZip ?
-                    e -> ZipArchiveEntry.class.cast(e).isUnixSymlink() :
-                    e -> TarArchiveEntry.class.cast(e).isSymbolicLink();
-            final BiFunction<ArchiveInputStream, ArchiveEntry, String> linkPath = isZip ?
-                    (a, e) -> { // todo: validate this with cygwin
-                        try {
-                            return new BufferedReader(new InputStreamReader(a)).readLine();
-                        } catch (final IOException ex) {
-                            throw new IllegalStateException(ex);
-                        }
-                    } :
-                    (a, e) -> TarArchiveEntry.class.cast(e).getLinkName();
-            final Map<Path, Path> linksToCopy = new HashMap<>();
-            final Map<Path, Path> linksToRetry = new HashMap<>();
             try (final ArchiveInputStream archiveInputStream = isZip ?
                     new ZipArchiveInputStream(fileStream) :
                     new TarArchiveInputStream(new GzipCompressorInputStream(fileStream))) {
@@ -80,58 +155,141 @@ public class Extractor {
                         continue;
                     }
 
-                    final int sep = entryName.indexOf('/');
-                    if (sep == entryName.length() || sep < 0) { // first level folder, skip
+                    final Path target = toTarget(exploded, entryName, filter);
+                    if (target == null) {
                         continue;
                     }
-
-                    final Path target = exploded.resolve(entryName.substring(sep + 1));
                     if (entry.isDirectory()) {
                         ensureExists(target);
                     } else {
                         ensureExists(target.getParent());
+                        files.incrementAndGet();
                         if (isLink.test(entry)) {
-                            final Path targetLinked = target.getParent().resolve(linkPath.apply(archiveInputStream, entry));
-                            if (Files.exists(targetLinked)) {
-                                try {
-                                    Files.createSymbolicLink(target, targetLinked);
-                                    setExecutableIfNeeded(target);
-                                } catch (final IOException ioe) {
-                                    linksToCopy.put(target, targetLinked);
-                                }
-                            } else {
-                                linksToRetry.put(target, targetLinked);
+                            final Path targetLinked = target.getParent().resolve(linkPath.apply(archiveInputStream, entry)).normalize();
+                            writers.submit(() -> link(target, targetLinked, linksToCopy, linksToRetry));
+                        } else if (entry.getSize() >= 0 && entry.getSize() <= MAX_BUFFERED_ENTRY_SIZE && threads > 1) {
+                            final byte[] content = new byte[(int) entry.getSize()];
+                            int offset = 0;
+                            int read;
+                            while (offset < content.length && (read = archiveInputStream.read(content, offset, content.length - offset)) >= 0) {
+                                offset += read;
                             }
+                            writers.submit(() -> write(new ByteArrayInputStream(content), target));
                         } else {
-                            Files.copy(archiveInputStream, target, StandardCopyOption.REPLACE_EXISTING);
-                            setExecutableIfNeeded(target);
+                            write(archiveInputStream, target);
                         }
                     }
                 }
             }
-            linksToRetry.forEach((target, targetLinked) -> {
-                try {
-                    Files.createSymbolicLink(target, targetLinked);
-                    setExecutableIfNeeded(target);
-                } catch (final IOException ioe) {
-                    linksToCopy.put(target, targetLinked);
+            writers.await();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't unpack graal archive", e);
+        } finally {
+            writers.shutdown();
+        }
+        finishLinks(linksToCopy, linksToRetry);
+        log.info("Extracted {} files in {}ms", files.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // random access so entries are read and written concurrently, links are created once all files are there
+    private void unpackZip(final Path archive, final Path exploded, final ExtractionFilter filter) {
+        final long start = System.nanoTime();
+        final Map<Path, Path> linksToCopy = new ConcurrentHashMap<>();
+        final Map<Path, Path> linksToRetry = new ConcurrentHashMap<>();
+        final Writers writers = new Writers();
+        int files = 0;
+        try (final ZipFile zip = new ZipFile(archive.toFile())) {
+            final List<ZipArchiveEntry> entries = Collections.list(zip.getEntriesInPhysicalOrder());
+            for (final ZipArchiveEntry entry : entries) {
+                final Path target = toTarget(exploded, entry.getName(), filter);
+                if (target == null) {
+                    continue;
                 }
-            });
-            linksToCopy.forEach((target, targetLinked) -> {
-                if (!Files.exists(targetLinked)) {
-                    log.warn("No file '" + targetLinked + "' found, skipping link");
-                    return;
+                if (!zip.canReadEntryData(entry)) {
+                    log.error("Can't read '" + entry.getName() + "'");
+                    continue;
                 }
-                try {
-                    Files.copy(targetLinked, target, StandardCopyOption.REPLACE_EXISTING);
-                    setExecutableIfNeeded(target);
-                } catch (final IOException e) {
-                    throw new IllegalStateException(e);
+                if (entry.isDirectory()) {
+                    ensureExists(target);
+                    continue;
+                }
+                ensureExists(target.getParent());
+                files++;
+                if (entry.isUnixSymlink()) {
+                    linksToRetry.put(target, target.getParent().resolve(zip.getUnixSymlink(entry)).normalize());
+                } else {
+                    writers.submit(() -> {
+                        try (final InputStream stream = zip.getInputStream(entry)) {
+                            write(stream, target);
+                        }
+                    });
                 }
-            });
+            }
+            writers.await();
         } catch (final IOException e) {
             throw new IllegalStateException("Can't unpack graal archive", e);
+        } finally {
+            writers.shutdown();
         }
+        finishLinks(linksToCopy, linksToRetry);
+        log.info("Extracted {} files in {}ms", files, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private Path toTarget(final Path exploded, final String entryName, final ExtractionFilter filter) {
+        final int sep = entryName.indexOf('/');
+        if (sep == entryName.length() || sep < 0) { // first level folder, skip
+            return null;
+        }
+        final String relative = entryName.substring(sep + 1);
+        if (relative.isEmpty()) {
+            return exploded;
+        }
+        if (!filter.test(relative)) {
+            return null;
+        }
+        return exploded.resolve(relative);
+    }
+
+    private void write(final InputStream stream, final Path target) throws IOException {
+        Files.copy(stream, target, StandardCopyOption.REPLACE_EXISTING);
+        setExecutableIfNeeded(target);
+    }
+
+    private void link(final Path target, final Path targetLinked,
+                      final Map<Path, Path> linksToCopy, final Map<Path, Path> linksToRetry) throws IOException {
+        if (Files.exists(targetLinked)) {
+            try {
+                Files.createSymbolicLink(target, target.getParent().relativize(targetLinked));
+                setExecutableIfNeeded(target);
+            } catch (final IOException ioe) {
+                linksToCopy.put(target, targetLinked);
+            }
+        } else { // not yet extracted (or written)
+            linksToRetry.put(target, targetLinked);
+        }
+    }
+
+    private void finishLinks(final Map<Path, Path> linksToCopy, final Map<Path, Path> linksToRetry) {
+        linksToRetry.forEach((target, targetLinked) -> {
+            try {
+                Files.createSymbolicLink(target, target.getParent().relativize(targetLinked));
+                setExecutableIfNeeded(target);
+            } catch (final IOException ioe) {
+                linksToCopy.put(target, targetLinked);
+            }
+        });
+        linksToCopy.forEach((target, targetLinked) -> {
+            if (!Files.exists(targetLinked)) {
+                log.warn("No file '" + targetLinked + "' found, skipping link");
+                return;
+            }
+            try {
+                Files.copy(targetLinked, target, StandardCopyOption.REPLACE_EXISTING);
+                setExecutableIfNeeded(target);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
     }
 
     private void setExecutableIfNeeded(final Path target) throws IOException {
@@ -151,4 +309,64 @@ public class Extractor {
             Files.createDirectories(target);
         }
     }
+
+    @FunctionalInterface
+    private interface IOTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Bounded writer pool: when the queue is full the submitting thread writes itself which bounds the memory.
+     * With a single thread everything is done by the caller.
+     */
+    private class Writers {
+        private final ThreadPoolExecutor pool = threads > 1 ? new ThreadPoolExecutor(
+                threads, threads, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(threads * 4),
+                new WriterThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy()) : null;
+        private final List<Future<?>> tasks = new ArrayList<>();
+
+        private void submit(final IOTask task) throws IOException {
+            if (pool == null) {
+                task.run();
+                return;
+            }
+            tasks.add(pool.submit(() -> {
+                task.run();
+                return null;
+            }));
+        }
+
+        private void await() throws IOException {
+            for (final Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    if (IOException.class.isInstance(e.getCause())) {
+                        throw IOException.class.cast(e.getCause());
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        private void shutdown() {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static class WriterThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "arthur-extractor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a command multiple times measuring the time to exit (or to an output marker),
+ * the peak RSS and the CPU time (both sampled from /proc so only available on Linux).
+ * A run exiting before a sample could be taken after its start is not measured (RSS and CPU are null).
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class Benchmark {
+    private static final long CLOCK_TICKS_PER_SECOND = 100; // USER_HZ, constant on common linux kernels
+
+    private final BenchmarkConfiguration configuration;
+
+    public BenchmarkResult run(final String name, final List<String> command) {
+        final BenchmarkResult result = new BenchmarkResult();
+        result.setName(name);
+        result.setCommand(command);
+        for (int i = 0; i < configuration.warmup + configuration.iterations; i++) {
+            final BenchmarkResult.Run run = runOnce(command);
+            if (i >= configuration.warmup) {
+                result.getRuns().add(run);
+            }
+            log.debug("[{}] Run #{}: {}", name, i + 1, run);
+        }
+        return result;
+    }
+
+    private BenchmarkResult.Run runOnce(final List<String> command) {
+        final ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (configuration.workingDirectory != null) {
+            builder.directory(configuration.workingDirectory.toFile());
+        }
+
+        final BenchmarkResult.Run run = new BenchmarkResult.Run();
+        final CountDownLatch markerLatch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final Process process;
+        try {
+            process = builder.start();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        final Thread reader = new Thread(() -> {
+            try (final BufferedReader stream = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+                String line;
+                while ((line = stream.readLine()) != null) {
+                    if (configuration.marker != null && markerLatch.getCount() > 0 && line.contains(configuration.marker)) {
+                        run.setWallClock((System.nanoTime() - start) / 1_000_000.);
+                        markerLatch.countDown();
+                    }
+                }
+            } catch (final IOException e) {
+                // process destroyed
+            }
+        }, "arthur-benchmark-output");
+        reader.start();
+
+        final Long pid = pid(process);
+        Long lastSample = null;
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(configuration.timeout);
+            boolean exited = false;
+            while (System.nanoTime() < deadline) {
+                if (pid != null && readProc(pid, run)) { // sample while alive since /proc/<pid> disappears with the process
+                    lastSample = System.nanoTime();
+                }
+                if (configuration.marker != null && markerLatch.await(configuration.samplingInterval, TimeUnit.MILLISECONDS)) {
+                    run.setMarkerFound(true);
+                    if (pid != null && readProc(pid, run)) {
+                        lastSample = System.nanoTime();
+                    }
+                    break;
+                }
+                if (process.waitFor(configuration.marker != null ? 0 : configuration.samplingInterval, TimeUnit.MILLISECONDS)) {
+                    run.setWallClock((System.nanoTime() - start) / 1_000_000.);
+                    exited = true;
+                    break;
+                }
+            }
+            if (!exited && !run.isMarkerFound()) {
+                throw new IllegalStateException("Benchmark run did not complete in " + configuration.timeout + "s: " + command);
+            }
+            if (exited && process.exitValue() != 0) {
+                throw new IllegalStateException("Benchmark run failed with exit code " + process.exitValue() + ": " + command);
+            }
+            if (exited && configuration.marker != null) { // the marker can be the last line, ensure output is read
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+                if (markerLatch.getCount() > 0) {
+                    throw new IllegalStateException("Marker '" + configuration.marker + "' not found in the output of " + command);
+                }
+                run.setMarkerFound(true);
+            }
+
+            // a sample taken right after the spawn does not reflect the process usage (short lived binaries)
+            run.setMeasured(lastSample != null && (run.isMarkerFound() ||
+                    lastSample - start >= TimeUnit.MILLISECONDS.toNanos(configuration.samplingInterval)));
+            if (!run.isMeasured()) {
+                run.setPeakRss(null);
+                run.setCpuTime(null);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return run;
+    }
+
+    private boolean readProc(final long pid, final BenchmarkResult.Run run) {
+        final Path proc = Paths.get("/proc", Long.toString(pid));
+        try {
+            for (final String line : Files.readAllLines(proc.resolve("status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    run.setPeakRss(Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()));
+                    break;
+                }
+            }
+            run.setCpuTime(parseCpuTime(new String(Files.readAllBytes(proc.resolve("stat")), UTF_8)));
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            // process exited between two samples, keep last values
+            return false;
+        }
+    }
+
+    static double parseCpuTime(final String stat) {
+        // the command (2nd field) can contain spaces so fields are counted from the closing parenthesis
+        final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        final long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]); // utime + stime (fields 14 and 15)
+        return ticks * 1000. / CLOCK_TICKS_PER_SECOND;
+    }
+
+    private Long pid(final Process process) {
+        try { // java >= 9
+            return Long.class.cast(Process.class.getMethod("pid").invoke(process));
+        } catch (final Exception e) {
+            try { // java 8 UNIXProcess
+                final Field pid = process.getClass().getDeclaredField("pid");
+                pid.setAccessible(true);
+                return pid.getLong(process);
+            } catch (final Exception ex) {
+                log.debug("Can't get process pid, RSS and CPU will not be measured: {}", ex.getMessage());
+                return null;
+            }
+        }
+    }
+
+    @Builder
+    public static class BenchmarkConfiguration {
+        private final int iterations;
+        private final int warmup;
+
+        /**
+         * If set, a run ends when this text is found in the output (the process is then killed).
+         */
+        private final String marker;
+
+        /**
+         * Maximum duration of a run in seconds.
+         */
+        private final long timeout;
+
+        /**
+         * Interval in milliseconds between two /proc samples.
+         */
+        private final long samplingInterval;
+
+        private final Path workingDirectory;
+    }
+}
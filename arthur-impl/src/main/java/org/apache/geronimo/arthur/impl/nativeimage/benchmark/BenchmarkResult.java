@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import lombok.Data;
+
+@Data
+public class BenchmarkResult {
+    private String name;
+    private List<String> command;
+    private List<Run> runs = new ArrayList<>();
+
+    /**
+     * @return median of the wall clock durations (milliseconds).
+     */
+    public Double getWallClock() {
+        return median(Run::getWallClock);
+    }
+
+    /**
+     * @return median of the peak RSS (kilobytes) of the measured runs, null if no run was measured.
+     */
+    public Double getPeakRss() {
+        return median(it -> it.getPeakRss() == null ? null : it.getPeakRss().doubleValue());
+    }
+
+    /**
+     * @return median of the CPU time (milliseconds) of the measured runs, null if no run was measured.
+     */
+    public Double getCpuTime() {
+        return median(Run::getCpuTime);
+    }
+
+    private Double median(final Function<Run, Double> accessor) {
+        final double[] values = runs.stream().map(accessor).filter(Objects::nonNull).mapToDouble(Double::doubleValue).sorted().toArray();
+        if (values.length == 0) {
+            return null;
+        }
+        final int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2.;
+    }
+
+    @Data
+    public static class Run {
+        /**
+         * Milliseconds from the process start to its exit or to the marker.
+         */
+        private double wallClock;
+
+        /**
+         * Peak resident set size in kilobytes (VmHWM).
+         */
+        private Long peakRss;
+
+        /**
+         * User and system CPU time in milliseconds.
+         */
+        private Double cpuTime;
+
+        /**
+         * Was the run stopped because the marker was found in the output.
+         */
+        private boolean markerFound;
+
+        /**
+         * Were peak RSS and CPU time sampled while the process was running (false for too short processes or without /proc).
+         */
+        private boolean measured;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.elf;
+
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves transitively the shared libraries (`DT_NEEDED`) an ELF binary needs to run,
+ * as the dynamic loader would do (runpath then search paths), without executing anything (no `ldd`).
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DynamicLibraries {
+    private final Collection<Path> searchPaths;
+
+    /**
+     * @param graalHome the GraalVM home to look libraries into too, can be null.
+     * @return the host library folders (as the default dynamic loader ones) then GraalVM ones.
+     */
+    public static List<Path> defaultSearchPaths(final Path graalHome) {
+        final String arch = System.getProperty("os.arch", "amd64").toLowerCase(ROOT);
+        final String triplet = ("amd64".equals(arch) || "x86_64".equals(arch) ? "x86_64" : arch) + "-linux-gnu";
+        return Stream.concat(
+                Stream.of(
+                        "/lib64", "/usr/lib64", "/lib/" + triplet, "/usr/lib/" + triplet,
+                        "/lib", "/usr/lib", "/usr/local/lib")
+                        .map(Paths::get),
+                graalHome == null ? Stream.empty() : Stream.of(
+                        graalHome.resolve("jre/lib/" + arch), graalHome.resolve("lib")))
+                .filter(Files::isDirectory)
+                .collect(toList());
+    }
+
+    /**
+     * @param binary the ELF binary.
+     * @return its interpreter and the libraries it needs (directly or not) by name.
+     */
+    public Resolution resolve(final Path binary) {
+        final ElfFile root = ElfReader.read(binary);
+        final Resolution resolution = new Resolution();
+        if (root.getInterpreter() != null) {
+            final Path interpreter = Paths.get(root.getInterpreter());
+            if (Files.exists(interpreter)) {
+                resolution.setInterpreter(interpreter);
+            } else {
+                resolution.getMissing().add(root.getInterpreter());
+            }
+        }
+
+        final Deque<Path> toVisit = new ArrayDeque<>();
+        final Map<Path, ElfFile> parsed = new LinkedHashMap<>();
+        parsed.put(binary, root);
+        toVisit.add(binary);
+        while (!toVisit.isEmpty()) {
+            final Path current = toVisit.poll();
+            final ElfFile elf = parsed.get(current);
+            for (final String needed : elf.getNeeded()) {
+                if (resolution.getLibraries().containsKey(needed) || resolution.getMissing().contains(needed)) {
+                    continue;
+                }
+                final Optional<Path> library = find(needed, current, elf, root);
+                if (!library.isPresent()) {
+                    resolution.getMissing().add(needed);
+                    continue;
+                }
+                log.debug("Resolved '{}' as '{}'", needed, library.get());
+                resolution.getLibraries().put(needed, library.get());
+                parsed.put(library.get(), ElfReader.read(library.get()));
+                toVisit.add(library.get());
+            }
+        }
+        return resolution;
+    }
+
+    private Optional<Path> find(final String name, final Path requester, final ElfFile requesterElf, final ElfFile root) {
+        if (name.contains("/")) {
+            return Optional.of(Paths.get(name)).filter(it -> isCompatible(it, root));
+        }
+        final Path origin = requester.toAbsolutePath().getParent();
+        return Stream.concat(
+                requesterElf.getRunPaths().stream()
+                        .filter(it -> !it.isEmpty())
+                        .map(it -> Paths.get(it.replace("${ORIGIN}", origin.toString()).replace("$ORIGIN", origin.toString()))),
+                searchPaths.stream())
+                .map(folder -> folder.resolve(name))
+                .filter(it -> isCompatible(it, root))
+                .findFirst();
+    }
+
+    // multilib hosts have 32 and 64 bits flavors of the same library
+    private boolean isCompatible(final Path library, final ElfFile root) {
+        if (!Files.isRegularFile(library)) {
+            return false;
+        }
+        try {
+            final ElfFile elf = ElfReader.read(library);
+            return elf.isElf64() == root.isElf64() && elf.getMachine() == root.getMachine();
+        } catch (final IllegalArgumentException iae) {
+            log.debug(iae.getMessage(), iae);
+            return false;
+        }
+    }
+
+    @Data
+    public static class Resolution {
+        /**
+         * The dynamic loader, null for a static binary.
+         */
+        private Path interpreter;
+
+        /**
+         * Needed library name to its location.
+         */
+        private Map<String, Path> libraries = new LinkedHashMap<>();
+
+        /**
+         * Libraries (or interpreter) not found.
+         */
+        private List<String> missing = new ArrayList<>();
+    }
+}
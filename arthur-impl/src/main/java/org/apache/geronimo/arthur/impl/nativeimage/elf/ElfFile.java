@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.elf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * What the dynamic loader needs to know about an ELF binary or library.
+ */
+@Data
+public class ElfFile {
+    private boolean elf64;
+    private int machine;
+
+    /**
+     * The program interpreter (dynamic loader), null for a static binary or a library.
+     */
+    private String interpreter;
+
+    /**
+     * `DT_NEEDED` entries (library names).
+     */
+    private List<String> needed = new ArrayList<>();
+
+    /**
+     * `DT_RUNPATH` (or `DT_RPATH` if no runpath) entries, `$ORIGIN` is not resolved.
+     */
+    private List<String> runPaths = new ArrayList<>();
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.elf;
+
+import static java.util.Arrays.asList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the program headers and dynamic section of an ELF file (32/64 bits, little/big endian),
+ * it only reads the few bytes it needs so it is fine on big binaries.
+ */
+public final class ElfReader {
+    private static final int PT_LOAD = 1;
+    private static final int PT_DYNAMIC = 2;
+    private static final int PT_INTERP = 3;
+
+    private static final int DT_NULL = 0;
+    private static final int DT_NEEDED = 1;
+    private static final int DT_STRTAB = 5;
+    private static final int DT_STRSZ = 10;
+    private static final int DT_RPATH = 15;
+    private static final int DT_RUNPATH = 29;
+
+    private ElfReader() {
+        // no-op
+    }
+
+    /**
+     * @param file the file to test.
+     * @return true if the file starts with the ELF magic number.
+     */
+    public static boolean isElf(final Path file) {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer magic = read(channel, 0, 4, ByteOrder.LITTLE_ENDIAN);
+            return magic.get() == 0x7f && magic.get() == 'E' && magic.get() == 'L' && magic.get() == 'F';
+        } catch (final IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file the ELF file to read.
+     * @return its interpreter and dynamic dependencies.
+     * @throws IllegalArgumentException if the file is not a valid ELF file.
+     */
+    public static ElfFile read(final Path file) {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer ident = read(channel, 0, 16, ByteOrder.LITTLE_ENDIAN);
+            if (ident.get(0) != 0x7f || ident.get(1) != 'E' || ident.get(2) != 'L' || ident.get(3) != 'F') {
+                throw new IllegalArgumentException("'" + file + "' is not an ELF file");
+            }
+            final boolean elf64 = ident.get(4) == 2;
+            final ByteOrder order = ident.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+            final ByteBuffer header = read(channel, 0, elf64 ? 64 : 52, order);
+            final ElfFile elf = new ElfFile();
+            elf.setElf64(elf64);
+            elf.setMachine(Short.toUnsignedInt(header.getShort(18)));
+            final long phoff = elf64 ? header.getLong(32) : Integer.toUnsignedLong(header.getInt(28));
+            final int phentsize = Short.toUnsignedInt(header.getShort(elf64 ? 54 : 42));
+            final int phnum = Short.toUnsignedInt(header.getShort(elf64 ? 56 : 44));
+
+            final List<long[]> loads = new ArrayList<>(); // vaddr, offset, filesz
+            long dynamicOffset = -1;
+            long dynamicSize = 0;
+            for (int i = 0; i < phnum; i++) {
+                final ByteBuffer ph = read(channel, phoff + (long) i * phentsize, elf64 ? 56 : 32, order);
+                final int type = ph.getInt(0);
+                final long offset = elf64 ? ph.getLong(8) : Integer.toUnsignedLong(ph.getInt(4));
+                final long vaddr = elf64 ? ph.getLong(16) : Integer.toUnsignedLong(ph.getInt(8));
+                final long filesz = elf64 ? ph.getLong(32) : Integer.toUnsignedLong(ph.getInt(16));
+                switch (type) {
+                    case PT_LOAD:
+                        loads.add(new long[]{vaddr, offset, filesz});
+                        break;
+                    case PT_DYNAMIC:
+                        dynamicOffset = offset;
+                        dynamicSize = filesz;
+                        break;
+                    case PT_INTERP:
+                        elf.setInterpreter(string(read(channel, offset, (int) filesz, order), 0));
+                        break;
+                    default:
+                }
+            }
+            if (dynamicOffset < 0) { // static
+                return elf;
+            }
+
+            final int entrySize = elf64 ? 16 : 8;
+            final ByteBuffer dynamic = read(channel, dynamicOffset, (int) dynamicSize, order);
+            final List<Long> needed = new ArrayList<>();
+            long rpath = -1;
+            long runpath = -1;
+            long strtab = -1;
+            long strsz = 0;
+            for (int i = 0; i + entrySize <= dynamicSize; i += entrySize) {
+                final long tag = elf64 ? dynamic.getLong(i) : dynamic.getInt(i);
+                final long value = elf64 ? dynamic.getLong(i + 8) : Integer.toUnsignedLong(dynamic.getInt(i + 4));
+                if (tag == DT_NULL) {
+                    break;
+                }
+                if (tag == DT_NEEDED) {
+                    needed.add(value);
+                } else if (tag == DT_STRTAB) {
+                    strtab = value;
+                } else if (tag == DT_STRSZ) {
+                    strsz = value;
+                } else if (tag == DT_RPATH) {
+                    rpath = value;
+                } else if (tag == DT_RUNPATH) {
+                    runpath = value;
+                }
+            }
+            if (strtab < 0) {
+                throw new IllegalArgumentException("No string table in '" + file + "'");
+            }
+            final long strtabOffset = toOffset(loads, strtab, file);
+            final ByteBuffer strings = read(channel, strtabOffset, (int) strsz, order);
+            for (final long index : needed) {
+                elf.getNeeded().add(string(strings, (int) index));
+            }
+            final long paths = runpath >= 0 ? runpath : rpath;
+            if (paths >= 0) {
+                elf.getRunPaths().addAll(asList(string(strings, (int) paths).split(":")));
+            }
+            return elf;
+        } catch (final IOException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Can't read '" + file + "'", e);
+        }
+    }
+
+    // dynamic entries use virtual addresses
+    private static long toOffset(final List<long[]> loads, final long address, final Path file) {
+        return loads.stream()
+                .filter(load -> address >= load[0] && address < load[0] + load[2])
+                .findFirst()
+                .map(load -> address - load[0] + load[1])
+                .orElseThrow(() -> new IllegalArgumentException("Invalid address " + address + " in '" + file + "'"));
+    }
+
+    private static String string(final ByteBuffer buffer, final int offset) {
+        int end = offset;
+        while (end < buffer.limit() && buffer.get(end) != 0) {
+            end++;
+        }
+        final byte[] bytes = new byte[end - offset];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length,
+                                   final ByteOrder order) throws IOException {
+        if (position < 0 || length < 0 || position + length > channel.size()) {
+            throw new IllegalArgumentException("Truncated ELF file");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalArgumentException("Truncated ELF file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
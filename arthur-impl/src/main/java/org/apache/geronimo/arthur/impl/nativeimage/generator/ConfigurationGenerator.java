@@ -47,6 +47,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @RequiredArgsConstructor
 public class ConfigurationGenerator implements Runnable {
+    public static final String REGISTRATIONS = "registrations.arthur.json";
+
     private final List<ArthurExtension> extensions;
     private final ArthurNativeImageConfiguration configuration;
     private final Path workingDirectory;
@@ -82,7 +84,9 @@ public class ConfigurationGenerator implements Runnable {
         for (final ArthurExtension extension : extensions) {
             log.debug("Executing {}", extension);
             context.setModified(false);
+            context.setCurrentExtension(extension.getClass().getName());
             extension.execute(context);
+            context.setCurrentExtension(null);
             if (context.isModified()) { // todo: loop while it modifies the context?
                 log.info("Extension {} updated build context", extension.getClass().getName());
             }
@@ -136,6 +140,14 @@ public class ConfigurationGenerator implements Runnable {
             }
             context.addDynamicProxiesConfigFile(json.toAbsolutePath().toString());
         }
+        if (!context.getRegistrationOrigins().isEmpty()) { // not used by native-image but enables to know who registered what
+            ensureWorkingDirectoryExists();
+            final Path json = workingDirectory.resolve(REGISTRATIONS);
+            try (final Writer writer = Files.newBufferedWriter(
+                    json, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                jsonSerializer.accept(context.getRegistrationOrigins(), writer);
+            }
+        }
     }
 
     private void ensureWorkingDirectoryExists() throws IOException {
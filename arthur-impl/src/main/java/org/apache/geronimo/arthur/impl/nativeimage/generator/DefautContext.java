@@ -25,10 +25,12 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -55,6 +57,12 @@ public class DefautContext implements ArthurExtension.Context {
     private final Map<String, String> extensionProperties;
     private boolean modified;
 
+    /**
+     * Registration key (`<kind>:<name>`, kind being reflection, resource, bundle or proxy) to what registered it.
+     */
+    private final Map<String, Collection<RegistrationOrigin>> registrationOrigins = new TreeMap<>();
+    private String currentExtension;
+
     @Override
     public <T extends Annotation> Collection<Class<?>> findAnnotatedClasses(final Class<T> annotation) {
         return annotatedClassesFinder.apply(annotation);
@@ -72,29 +80,53 @@ public class DefautContext implements ArthurExtension.Context {
 
     @Override
     public void register(final ClassReflectionModel classReflectionModel) {
+        register(classReflectionModel, null);
+    }
+
+    @Override
+    public void register(final ClassReflectionModel classReflectionModel, final String origin) {
         reflections.removeIf(it -> Objects.equals(classReflectionModel.getName(), it.getName()));
         reflections.add(classReflectionModel);
+        trackOrigin("reflection:" + classReflectionModel.getName(), origin);
         modified = true;
     }
 
     @Override
     public void register(final ResourceModel resourceModel) {
+        register(resourceModel, null);
+    }
+
+    @Override
+    public void register(final ResourceModel resourceModel, final String origin) {
         resources.add(resourceModel);
+        trackOrigin("resource:" + resourceModel.getPattern(), origin);
         modified = true;
     }
 
     @Override
     public void register(final ResourceBundleModel resourceBundleModel) {
+        register(resourceBundleModel, null);
+    }
+
+    @Override
+    public void register(final ResourceBundleModel resourceBundleModel, final String origin) {
         bundles.removeIf(it -> Objects.equals(it.getName(), resourceBundleModel.getName()));
         bundles.add(resourceBundleModel);
+        trackOrigin("bundle:" + resourceBundleModel.getName(), origin);
         modified = true;
     }
 
     @Override
     public void register(final DynamicProxyModel dynamicProxyModel) {
+        register(dynamicProxyModel, null);
+    }
+
+    @Override
+    public void register(final DynamicProxyModel dynamicProxyModel, final String origin) {
         if (dynamicProxyModels.add(dynamicProxyModel)) {
             modified = true;
         }
+        trackOrigin("proxy:" + ofNullable(dynamicProxyModel.getClasses()).map(c -> String.join(",", c)).orElse(""), origin);
     }
 
     @Override
@@ -208,6 +240,11 @@ public class DefautContext implements ArthurExtension.Context {
         configuration.getDynamicProxyConfigurationFiles().add(path);
     }
 
+    private void trackOrigin(final String key, final String origin) {
+        registrationOrigins.computeIfAbsent(key, k -> new LinkedHashSet<>())
+                .add(new RegistrationOrigin(ofNullable(currentExtension).orElse("unknown"), origin));
+    }
+
     private Stream<Class<?>> doFindHierarchy(final Class<?> clazz, final Set<Class<?>> visited) {
         visited.add(clazz);
         return Stream.concat(Stream.concat(
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.generator;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Enables to query registration origins (see {@link ConfigurationGenerator#REGISTRATIONS}).
+ */
+@RequiredArgsConstructor
+public class RegistrationOrigins {
+    private final Map<String, ? extends Collection<RegistrationOrigin>> origins;
+
+    /**
+     * @param name a class, resource or bundle name.
+     * @return the registrations (key is `<kind>:<name>`) matching this name with their origins.
+     * For classes, enclosing classes registrations are returned too, for resources the patterns matching the name.
+     */
+    public Map<String, Collection<RegistrationOrigin>> why(final String name) {
+        final Map<String, Collection<RegistrationOrigin>> result = new TreeMap<>();
+        origins.forEach((key, value) -> {
+            final int sep = key.indexOf(':');
+            final String kind = key.substring(0, sep);
+            final String registered = key.substring(sep + 1);
+            if (matches(kind, registered, name)) {
+                result.put(key, (Collection<RegistrationOrigin>) value);
+            }
+        });
+        return result;
+    }
+
+    private boolean matches(final String kind, final String registered, final String name) {
+        switch (kind) {
+            case "reflection":
+                return name.equals(registered) || name.startsWith(registered + '$');
+            case "resource":
+                try {
+                    return name.equals(registered) || name.matches(registered);
+                } catch (final PatternSyntaxException pse) {
+                    return false;
+                }
+            case "proxy":
+                return Stream.of(registered.split(",")).anyMatch(name::equals);
+            default:
+                return name.equals(registered);
+        }
+    }
+}
@@ -20,7 +20,6 @@ import static java.util.Arrays.asList;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -41,31 +40,30 @@ public class AnnotationExtension implements ArthurExtension {
 
     @Override
     public void execute(final Context context) {
-        context.findAnnotatedClasses(RegisterClass.class).stream()
-                .flatMap(clazz -> register(clazz, clazz.getAnnotation(RegisterClass.class)))
-                .forEach(context::register);
+        context.findAnnotatedClasses(RegisterClass.class)
+                .forEach(clazz -> register(clazz, clazz.getAnnotation(RegisterClass.class))
+                        .forEach(model -> context.register(model, "@RegisterClass on " + clazz.getName())));
 
-        final Collection<RegisterResource> resources = context.findAnnotatedClasses(RegisterResource.class).stream()
-                .flatMap(clazz -> Stream.of(clazz.getAnnotation(RegisterResource.class)))
-                .collect(toList());
-        resources.stream()
-                .flatMap(rr -> Stream.of(rr.patterns()))
-                .map(pattern -> {
-                    final ResourceModel resourceModel = new ResourceModel();
-                    resourceModel.setPattern(pattern);
-                    return resourceModel;
-                })
-                .distinct()
-                .forEach(context::register);
-        resources.stream()
-                .flatMap(rr -> Stream.of(rr.bundles()))
-                .map(name -> {
-                    final ResourceBundleModel bundleModel = new ResourceBundleModel();
-                    bundleModel.setName(name);
-                    return bundleModel;
-                })
-                .distinct()
-                .forEach(context::register);
+        context.findAnnotatedClasses(RegisterResource.class).forEach(clazz -> {
+            final RegisterResource config = clazz.getAnnotation(RegisterResource.class);
+            final String origin = "@RegisterResource on " + clazz.getName();
+            Stream.of(config.patterns())
+                    .distinct()
+                    .map(pattern -> {
+                        final ResourceModel resourceModel = new ResourceModel();
+                        resourceModel.setPattern(pattern);
+                        return resourceModel;
+                    })
+                    .forEach(model -> context.register(model, origin));
+            Stream.of(config.bundles())
+                    .distinct()
+                    .map(name -> {
+                        final ResourceBundleModel bundleModel = new ResourceBundleModel();
+                        bundleModel.setName(name);
+                        return bundleModel;
+                    })
+                    .forEach(model -> context.register(model, origin));
+        });
     }
 
     private Stream<ClassReflectionModel> register(final Class<?> clazz, final RegisterClass config) {
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.graal;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Computes native-image heap and threads from the machine resources,
+ * respecting container limits (cgroup v1 and v2) since the JVM ergonomic of the build does not always do it.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class AutoSizing {
+    private static final long UNLIMITED_V1 = Long.MAX_VALUE / 2; // v1 uses page aligned Long.MAX_VALUE
+
+    private final Path cgroupRoot;
+
+    /**
+     * Memory already used in the same container by the current JVM (maven), it is not available for native-image.
+     */
+    private final long currentJvmMemory;
+
+    public AutoSizing() {
+        this(Paths.get("/sys/fs/cgroup"));
+    }
+
+    public AutoSizing(final Path cgroupRoot) {
+        this(cgroupRoot, Runtime.getRuntime().maxMemory());
+    }
+
+    public void apply(final ArthurNativeImageConfiguration configuration) {
+        final Resources resources = detect();
+        final int cpus = resources.getCpus();
+        if (configuration.getMaxHeap() == null) {
+            // the remaining quarter is kept for native-image off-heap memory (metaspace, code cache, native buffers)
+            final long available = Math.max(0, resources.getMemory() - currentJvmMemory);
+            configuration.setMaxHeap(Math.max(256, available * 3 / 4 / (1024 * 1024)) + "m");
+        }
+        if (configuration.getActiveProcessorCount() == null) {
+            configuration.setActiveProcessorCount(cpus);
+        }
+        if (configuration.getNumberOfThreads() == null) {
+            configuration.setNumberOfThreads(cpus);
+        }
+        log.info("Auto-sizing native-image for {}MB of memory ({}, {}MB used by the current JVM) and {} CPU ({}): " +
+                        "-J-Xmx{}, ActiveProcessorCount={}, NumberOfThreads={}",
+                resources.getMemory() / (1024 * 1024), resources.getMemorySource(), currentJvmMemory / (1024 * 1024),
+                cpus, resources.getCpusSource(),
+                configuration.getMaxHeap(), configuration.getActiveProcessorCount(), configuration.getNumberOfThreads());
+    }
+
+    public Resources detect() {
+        final Resources resources = new Resources();
+
+        final long physical = findPhysicalMemory();
+        final Optional<Long> cgroupMemory = findCgroupMemory();
+        if (cgroupMemory.isPresent() && (physical <= 0 || cgroupMemory.get() < physical)) {
+            resources.setMemory(cgroupMemory.get());
+            resources.setMemorySource("cgroup limit");
+        } else {
+            resources.setMemory(physical);
+            resources.setMemorySource("physical memory");
+        }
+
+        final int available = Runtime.getRuntime().availableProcessors();
+        final Optional<Integer> cgroupCpus = findCgroupCpus();
+        if (cgroupCpus.isPresent() && cgroupCpus.get() < available) {
+            resources.setCpus(cgroupCpus.get());
+            resources.setCpusSource("cgroup quota");
+        } else {
+            resources.setCpus(available);
+            resources.setCpusSource("available processors");
+        }
+        return resources;
+    }
+
+    private Optional<Long> findCgroupMemory() {
+        final Optional<String> v2 = read(cgroupRoot.resolve("memory.max"));
+        if (v2.isPresent()) {
+            return "max".equals(v2.get()) ? empty() : of(Long.parseLong(v2.get()));
+        }
+        return read(cgroupRoot.resolve("memory/memory.limit_in_bytes"))
+                .map(Long::parseLong)
+                .filter(it -> it > 0 && it < UNLIMITED_V1);
+    }
+
+    private Optional<Integer> findCgroupCpus() {
+        final Optional<String> v2 = read(cgroupRoot.resolve("cpu.max"));
+        if (v2.isPresent()) {
+            final String[] quotaPeriod = v2.get().split(" ");
+            if ("max".equals(quotaPeriod[0]) || quotaPeriod.length != 2) {
+                return empty();
+            }
+            return of(toCpus(Long.parseLong(quotaPeriod[0]), Long.parseLong(quotaPeriod[1])));
+        }
+        final Optional<Long> quota = read(cgroupRoot.resolve("cpu/cpu.cfs_quota_us")).map(Long::parseLong);
+        final Optional<Long> period = read(cgroupRoot.resolve("cpu/cpu.cfs_period_us")).map(Long::parseLong);
+        if (quota.isPresent() && period.isPresent() && quota.get() > 0 && period.get() > 0) {
+            return of(toCpus(quota.get(), period.get()));
+        }
+        return empty();
+    }
+
+    private int toCpus(final long quota, final long period) {
+        return (int) Math.max(1, (quota + period - 1) / period);
+    }
+
+    private long findPhysicalMemory() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return com.sun.management.OperatingSystemMXBean.class.cast(os).getTotalPhysicalMemorySize();
+        }
+        return Runtime.getRuntime().maxMemory() * 4; // default JVM heap is 1/4 of the physical memory
+    }
+
+    private Optional<String> read(final Path file) {
+        if (!Files.isRegularFile(file)) {
+            return empty();
+        }
+        try {
+            return of(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()).filter(it -> !it.isEmpty());
+        } catch (final IOException e) {
+            log.debug("Can't read {}: {}", file, e.getMessage());
+            return empty();
+        }
+    }
+
+    @Data
+    public static class Resources {
+        private long memory;
+        private String memorySource;
+        private int cpus;
+        private String cpusSource;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.graal;
+
+import static java.util.Arrays.asList;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessExecutor;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Manages a native-image build server session per GraalVM home and classpath:
+ * the session name is a fingerprint of both, when it changes the previous server is shut down
+ * to avoid reusing stale classes.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BuildServer {
+    public static final String STATE = "native-image.server";
+
+    private final Path state;
+
+    /**
+     * Enables the build server on the configuration, stopping the previous one if the fingerprint changed.
+     *
+     * @param configuration the configuration to use to build the image, its classpath must be set.
+     */
+    public void prepare(final ArthurNativeImageConfiguration configuration) {
+        final String session = "arthur-" + fingerprint(configuration.getNativeImage(), configuration.getClasspath());
+        final Properties previous = load();
+        if (previous != null) {
+            final String previousSession = previous.getProperty("session");
+            if (session.equals(previousSession)) {
+                log.info("Reusing native-image build server '{}'", session);
+            } else {
+                log.info("Classpath or GraalVM changed, stopping native-image build server '{}'", previousSession);
+                shutdown(previous.getProperty("nativeImage"), previousSession);
+            }
+        } else {
+            log.info("Using native-image build server '{}'", session);
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty("nativeImage", configuration.getNativeImage());
+        properties.setProperty("session", session);
+        try {
+            if (state.getParent() != null && !Files.exists(state.getParent())) {
+                Files.createDirectories(state.getParent());
+            }
+            try (final OutputStream stream = Files.newOutputStream(state)) {
+                properties.store(stream, "Arthur native-image build server");
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        configuration.setNoServer(false);
+        if (configuration.getCustomOptions() == null) {
+            configuration.setCustomOptions(new ArrayList<>());
+        }
+        configuration.getCustomOptions().add("--server-session=" + session);
+    }
+
+    /**
+     * @return true if a server was stopped.
+     */
+    public boolean stop() {
+        final Properties properties = load();
+        if (properties == null) {
+            return false;
+        }
+        shutdown(properties.getProperty("nativeImage"), properties.getProperty("session"));
+        try {
+            Files.deleteIfExists(state);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    private void shutdown(final String nativeImage, final String session) {
+        if (nativeImage == null || session == null) {
+            return;
+        }
+        try {
+            new ProcessExecutor(false, asList(nativeImage, "--server-session=" + session, "--server-shutdown")).run();
+        } catch (final RuntimeException re) { // server already stopped or GraalVM removed, not blocking
+            log.warn("Can't stop native-image build server '{}': {}", session, re.getMessage());
+        }
+    }
+
+    private Properties load() {
+        if (!Files.exists(state)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(state)) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            log.warn("Can't read '{}': {}", state, e.getMessage());
+            return null;
+        }
+        return properties;
+    }
+
+    static String fingerprint(final String nativeImage, final Collection<String> classpath) {
+        return fingerprint(nativeImage, classpath, System.getenv("PATH"));
+    }
+
+    // the launcher is resolved (PATH, symlinks) and the GraalVM release file hashed to detect a GraalVM upgrade
+    static String fingerprint(final String nativeImage, final Collection<String> classpath, final String path) {
+        final Path executable = resolveExecutable(nativeImage, path);
+        final Path release = findRelease(executable);
+        final Collection<String> values = new ArrayList<>();
+        values.add(executable.toString());
+        if (release != null) {
+            try {
+                values.add(new String(Files.readAllBytes(release), StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return Fingerprint.of(Stream.concat(
+                Stream.concat(Stream.of(executable), release == null ? Stream.empty() : Stream.of(release)),
+                classpath == null ? Stream.empty() : classpath.stream().map(Paths::get))
+                .collect(toList()), values);
+    }
+
+    static Path resolveExecutable(final String nativeImage, final String path) {
+        Path executable = Paths.get(nativeImage);
+        if (executable.getParent() == null && path != null) { // a command name, look it up in the PATH
+            final boolean windows = System.getProperty("os.name", "").toLowerCase(ROOT).contains("win");
+            executable = Stream.of(path.split(File.pathSeparator))
+                    .filter(it -> !it.isEmpty())
+                    .flatMap(it -> (windows ? Stream.of(nativeImage, nativeImage + ".cmd", nativeImage + ".exe") : Stream.of(nativeImage))
+                            .map(name -> Paths.get(it, name)))
+                    .filter(Files::isRegularFile)
+                    .findFirst()
+                    .orElse(executable);
+        }
+        try {
+            return Files.exists(executable) ? executable.toRealPath() : executable;
+        } catch (final IOException e) {
+            return executable.toAbsolutePath();
+        }
+    }
+
+    // bin/native-image or lib/svm/bin/native-image depending the GraalVM version
+    private static Path findRelease(final Path executable) {
+        Path current = executable.getParent();
+        for (int i = 0; current != null && i < 4; i++, current = current.getParent()) {
+            final Path release = current.resolve("release");
+            if (Files.isRegularFile(release)) {
+                return release;
+            }
+        }
+        return null;
+    }
+}
@@ -21,11 +21,19 @@ import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Properties;
 import java.util.stream.Stream;
 
 import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
@@ -45,6 +53,95 @@ public class CommandGenerator {
                 .collect(toList());
     }
 
+    /**
+     * Writes the arguments of the command in an argument file and returns the command referencing it.
+     * The executable and its JVM options (-J) stay in the command since they are handled by the launcher.
+     *
+     * @param command the full command (see {@link #generate(ArthurNativeImageConfiguration)}).
+     * @param argFile where to write the arguments.
+     * @return the command to execute.
+     */
+    public List<String> toArgFileCommand(final List<String> command, final Path argFile) {
+        final List<String> launcher = new ArrayList<>();
+        launcher.add(command.get(0));
+        command.stream().skip(1).filter(it -> it.startsWith("-J")).forEach(launcher::add);
+        final List<String> arguments = command.stream().skip(1).filter(it -> !it.startsWith("-J")).collect(toList());
+        try {
+            if (argFile.getParent() != null && !Files.exists(argFile.getParent())) {
+                Files.createDirectories(argFile.getParent());
+            }
+            Files.write(argFile, arguments.stream().map(this::quote).collect(toList()), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        launcher.add("@" + argFile.toAbsolutePath());
+        return launcher;
+    }
+
+    /**
+     * @param nativeImage the native-image executable.
+     * @return true if the native-image version is known to support argument files (GraalVM >= 21.1).
+     */
+    public boolean supportsArgFile(final String nativeImage) {
+        final Path executable = Paths.get(nativeImage);
+        if (!executable.isAbsolute() || !Files.exists(executable)) { // PATH lookup, we can't know the version
+            return false;
+        }
+        Path current;
+        try {
+            current = executable.toRealPath().getParent();
+        } catch (final IOException e) {
+            return false;
+        }
+        // bin/native-image or lib/svm/bin/native-image
+        for (int i = 0; i < 4 && current != null; i++, current = current.getParent()) {
+            final Path release = current.resolve("release");
+            if (Files.exists(release)) {
+                final Properties properties = new Properties();
+                try (final InputStream stream = Files.newInputStream(release)) {
+                    properties.load(stream);
+                } catch (final IOException e) {
+                    return false;
+                }
+                final String graalVersion = unquote(properties.getProperty("GRAALVM_VERSION"));
+                if (graalVersion != null) {
+                    return compareVersion(graalVersion, 21, 1);
+                }
+                final String javaVersion = unquote(properties.getProperty("JAVA_VERSION"));
+                return javaVersion != null && compareVersion(javaVersion, 17, 0);
+            }
+        }
+        return false;
+    }
+
+    private boolean compareVersion(final String version, final int minMajor, final int minMinor) {
+        final String[] segments = version.split("[.+-]");
+        try {
+            final int major = Integer.parseInt(segments[0]);
+            final int minor = segments.length > 1 ? Integer.parseInt(segments[1]) : 0;
+            return major > minMajor || (major == minMajor && minor >= minMinor);
+        } catch (final NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    private String unquote(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String trimmed = value.trim();
+        return trimmed.startsWith("\"") && trimmed.endsWith("\"") && trimmed.length() > 1 ?
+                trimmed.substring(1, trimmed.length() - 1) : trimmed;
+    }
+
+    // java launcher argument file format, quotes are needed for whitespaces and escaping is done in quoted strings
+    private String quote(final String argument) {
+        if (!argument.isEmpty() && argument.chars().noneMatch(c -> Character.isWhitespace(c) || c == '"' || c == '\'' || c == '\\' || c == '#')) {
+            return argument;
+        }
+        return '"' + argument.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
     private Object getDefaultValueFor(final Field field, final ArthurNativeImageConfiguration config) {
         switch (field.getName()) {
             case "main":
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.graal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+import lombok.NoArgsConstructor;
+
+/**
+ * Computes a short hash of a set of files (path, size and last modified date, directories are walked) and values.
+ * It is used to detect when a build input changed without reading the file contents.
+ * Files rewritten on each build with the same content (generated configuration) are hashed by content instead.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Fingerprint {
+    public static String of(final Collection<Path> files, final Collection<String> values) {
+        return of(files, null, values);
+    }
+
+    public static String of(final Collection<Path> files, final Collection<Path> contents, final Collection<String> values) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (files != null) {
+            files.forEach(path -> update(digest, path));
+        }
+        if (contents != null) {
+            contents.forEach(path -> updateContent(digest, path));
+        }
+        if (values != null) {
+            values.forEach(value -> digest.update((value + '\n').getBytes(UTF_8)));
+        }
+        final StringBuilder hex = new StringBuilder();
+        final byte[] bytes = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+
+    private static void update(final MessageDigest digest, final Path path) {
+        if (Files.isDirectory(path)) {
+            try (final Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile).sorted().forEach(file -> updateFile(digest, file));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            updateFile(digest, path);
+        }
+    }
+
+    private static void updateContent(final MessageDigest digest, final Path file) {
+        digest.update(file.toAbsolutePath().toString().getBytes(UTF_8));
+        if (Files.exists(file)) {
+            try {
+                digest.update(Files.readAllBytes(file));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static void updateFile(final MessageDigest digest, final Path file) {
+        digest.update(file.toAbsolutePath().toString().getBytes(UTF_8));
+        if (Files.exists(file)) {
+            try {
+                digest.update((Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis()).getBytes(UTF_8));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the last image build was done from (inputs digest and image name) and what it produced.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageBuildState {
+    private String inputs;
+    private String to;
+    private String imageId;
+    private String digest;
+
+    /**
+     * @param inputs the inputs digest of the current build (see {@link ImageInputs}).
+     * @param to     the image the current build produces.
+     * @return true if this state was produced by a build of the same inputs to the same image.
+     */
+    public boolean isSameBuild(final String inputs, final String to) {
+        return inputs != null && inputs.equals(this.inputs) && to != null && to.equals(this.to) &&
+                imageId != null && digest != null;
+    }
+
+    /**
+     * @param path where the state was stored.
+     * @return the stored state or null if there is none.
+     * @throws IOException if the state can't be read.
+     */
+    public static ImageBuildState load(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(path)) {
+            properties.load(stream);
+        }
+        return new ImageBuildState(
+                properties.getProperty("inputs"), properties.getProperty("to"),
+                properties.getProperty("imageId"), properties.getProperty("digest"));
+    }
+
+    public void store(final Path path) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("inputs", inputs);
+        properties.setProperty("to", to);
+        properties.setProperty("imageId", imageId);
+        properties.setProperty("digest", digest);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (final OutputStream stream = Files.newOutputStream(path)) {
+            properties.store(stream, "Arthur image inputs");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * Digest of the inputs of an image build: configuration values and layer entries (metadata and content).
+ * Two builds with the same digest produce the same image so the second one can be skipped.
+ */
+public class ImageInputs {
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[8192];
+
+    public ImageInputs() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param value a configuration value (base image, entrypoint, layer name...), null is a value too.
+     * @return this.
+     */
+    public ImageInputs value(final Object value) {
+        digest.update((value + "\n").getBytes(UTF_8));
+        return this;
+    }
+
+    /**
+     * @param source           the file added to the image.
+     * @param target           its path in the image.
+     * @param permissions      its permissions in the image.
+     * @param modificationTime its modification time in the image.
+     * @return this.
+     */
+    public ImageInputs entry(final Path source, final String target, final String permissions, final Instant modificationTime) {
+        value(target + ":" + permissions + ":" + modificationTime.toEpochMilli());
+        if (Files.isDirectory(source)) {
+            return this;
+        }
+        try (final InputStream stream = Files.newInputStream(source)) {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    /**
+     * @return the hexadecimal digest of the inputs, this instance can't be used after.
+     */
+    public String digest() {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Locale.ROOT;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
+
+/**
+ * Assigns the other files of an image to layers, from the least to the most frequently changing one.
+ * With explicit groups a file goes to the first group with a matching include glob (`Others` otherwise),
+ * `auto` puts configuration files (by extension or folder) in `Others` and the other ones in `Others-stable`
+ * and `single` puts everything in `Others`.
+ * With `auto`, an optional date also moves the files modified after it to `Others`.
+ */
+public class OtherFilesLayering {
+    public static final String OTHERS = "Others";
+    public static final String STABLE = "Others-stable";
+
+    private static final Collection<String> VOLATILE_EXTENSIONS = new HashSet<>(asList(
+            "properties", "yaml", "yml", "json", "xml", "conf", "cfg", "ini", "toml", "env", "sh"));
+    private static final Collection<String> VOLATILE_FOLDERS = new HashSet<>(asList("conf", "config", "etc"));
+
+    private final Map<String, ExtractionFilter> groups = new LinkedHashMap<>();
+    private final boolean auto;
+    private final Instant stableBefore;
+
+    /**
+     * @param mode         `single` or `auto`, ignored when there are groups.
+     * @param groups       explicit layers (name to include globs), can be empty.
+     * @param stableBefore with `auto`, files modified after this date are not stable, null to ignore modification times.
+     */
+    public OtherFilesLayering(final String mode, final Map<String, ? extends Collection<String>> groups, final Instant stableBefore) {
+        if (groups != null) {
+            groups.forEach((name, includes) -> this.groups.put(name, new ExtractionFilter(includes, emptyList())));
+        }
+        if (this.groups.isEmpty() && !"auto".equals(mode) && !"single".equals(mode)) {
+            throw new IllegalArgumentException("Unknown otherFilesLayering '" + mode + "', use auto or single");
+        }
+        this.auto = this.groups.isEmpty() && "auto".equals(mode);
+        this.stableBefore = stableBefore;
+    }
+
+    /**
+     * @return the layer names, the most frequently changing one last.
+     */
+    public List<String> getLayers() {
+        final List<String> layers = new ArrayList<>(groups.keySet());
+        if (auto) {
+            layers.add(STABLE);
+        }
+        layers.add(OTHERS);
+        return layers;
+    }
+
+    /**
+     * @param file     the file to add.
+     * @param relative its path in the image without leading slash.
+     * @return the layer the file goes to.
+     */
+    public String layerOf(final Path file, final String relative) {
+        if (!groups.isEmpty()) {
+            return groups.entrySet().stream()
+                    .filter(group -> group.getValue().test(relative))
+                    .map(Map.Entry::getKey)
+                    .findFirst()
+                    .orElse(OTHERS);
+        }
+        return auto && isStable(file, relative) ? STABLE : OTHERS;
+    }
+
+    // configuration files are likely environment specific or tuned often
+    private boolean isStable(final Path file, final String relative) {
+        final String name = file.getFileName().toString().toLowerCase(ROOT);
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0 && VOLATILE_EXTENSIONS.contains(name.substring(dot + 1))) {
+            return false;
+        }
+        if (Stream.of(relative.split("/")).anyMatch(VOLATILE_FOLDERS::contains)) {
+            return false;
+        }
+        try {
+            return stableBefore == null || Files.getLastModifiedTime(file).toInstant().isBefore(stableBefore);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.util.Collections.emptyList;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Extracted distributions shared by all workspaces (local repositories, workdirs) of a machine.
+ * An entry is keyed by the archive SHA-256 (and the extraction filter) and workspaces get a tree of hard links to it,
+ * files are copied when the workspace is on another file system.
+ * Workspaces using an entry are registered to let {@link #gc()} delete entries no more used.
+ * Since linked files are shared, a workspace must never modify them in place, see {@link #derive(String, String, Path, Consumer)}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ContentStore {
+    static final String MARKER = ".arthur.store";
+
+    private final Path root;
+
+    /**
+     * @param sha256 the archive SHA-256.
+     * @param filter the extraction filter if the archive is not fully extracted.
+     * @return the store key of this archive extraction.
+     */
+    public static String key(final String sha256, final ExtractionFilter filter) {
+        if (filter == null || !filter.isSelective()) {
+            return sha256.toLowerCase(ROOT);
+        }
+        final MessageDigest digest = Downloader.newDigest();
+        digest.update(String.join(",", filter.getIncludes()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '|');
+        digest.update(String.join(",", filter.getExcludes()).getBytes(StandardCharsets.UTF_8));
+        return sha256.toLowerCase(ROOT) + '-' + Downloader.verify(digest, null).substring(0, 12);
+    }
+
+    /**
+     * Links the entry in target, extracting it in the store first if needed.
+     *
+     * @param key       the entry key.
+     * @param target    where to link the entry, must not exist.
+     * @param workspace the final location of the target (if moved after), it is what references the entry.
+     * @param extractor extracts the distribution in the folder it is called with if the entry does not exist yet.
+     * @return target.
+     */
+    public Path link(final String key, final Path target, final Path workspace, final Consumer<Path> extractor) {
+        final Path entry = root.resolve(key);
+        try (final InstallLock lock = InstallLock.acquire(root.resolve(key + ".lock"))) {
+            if (!Files.isDirectory(entry)) {
+                final Path part = root.resolve(key + ".part");
+                delete(part);
+                log.info("Adding '{}' to GraalVM store '{}'", key, root);
+                extractor.accept(part);
+                Files.move(part, entry, StandardCopyOption.ATOMIC_MOVE);
+            }
+            final long start = System.nanoTime();
+            final boolean linked = linkTree(entry, target);
+            log.info("{} '{}' from GraalVM store in {}ms",
+                    linked ? "Linked" : "Copied", target, (System.nanoTime() - start) / 1_000_000);
+            register(key, target, workspace);
+            return target;
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't link '" + key + "' in '" + target + "'", e);
+        }
+    }
+
+    /**
+     * Adds a tree extracted outside of the store (while downloading for example), it stays usable as it is.
+     *
+     * @param key       the entry key.
+     * @param tree      the extracted distribution.
+     * @param workspace the final location of the tree (if moved after), it is what references the entry.
+     */
+    public void adopt(final String key, final Path tree, final Path workspace) {
+        final Path entry = root.resolve(key);
+        try (final InstallLock lock = InstallLock.acquire(root.resolve(key + ".lock"))) {
+            if (!Files.isDirectory(entry)) {
+                final Path part = root.resolve(key + ".part");
+                delete(part);
+                linkTree(tree, part);
+                Files.move(part, entry, StandardCopyOption.ATOMIC_MOVE);
+            }
+            register(key, tree, workspace);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't add '" + tree + "' to '" + root + "'", e);
+        }
+    }
+
+    /**
+     * @param tree a workspace tree.
+     * @return the key of the entry the tree is hard linked to or null if it is not linked (copied or not from the store).
+     */
+    public String linkedKey(final Path tree) {
+        final Path marker = tree.resolve(MARKER);
+        if (!Files.isRegularFile(marker)) {
+            return null;
+        }
+        try {
+            final String key = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim();
+            final Path entry = root.resolve(key);
+            if (!Files.isDirectory(entry)) {
+                return null;
+            }
+            try (final Stream<Path> files = Files.walk(entry)) {
+                final Path sample = files.filter(it -> Files.isRegularFile(it, LinkOption.NOFOLLOW_LINKS)).findFirst().orElse(null);
+                final Path linked = sample == null ? null : tree.resolve(entry.relativize(sample).toString());
+                return linked != null && Files.exists(linked) && Files.isSameFile(sample, linked) ? key : null;
+            }
+        } catch (final IOException e) {
+            log.debug("Can't read '{}': {}", marker, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Modifies a linked tree (a native-image installation for example) without changing the files shared with other workspaces:
+     * the customization is done once on a copy of the entry stored as `<key>-<suffix>`
+     * then the files of the tree linked to the original entry are linked to the derived one.
+     * Files of the tree not coming from the store are kept.
+     *
+     * @param key        the entry the tree is linked to.
+     * @param suffix     identifies the customization.
+     * @param tree       the linked workspace tree, it is what references the entry.
+     * @param customizer modifies the copy of the entry, only called if the derived entry does not exist yet.
+     * @return the derived key.
+     */
+    public String derive(final String key, final String suffix, final Path tree, final Consumer<Path> customizer) {
+        final String derivedKey = key + '-' + suffix;
+        final Path source = root.resolve(key);
+        final Path entry = root.resolve(derivedKey);
+        try (final InstallLock lock = InstallLock.acquire(root.resolve(derivedKey + ".lock"))) {
+            if (!Files.isDirectory(entry)) {
+                final Path part = root.resolve(derivedKey + ".part");
+                delete(part);
+                log.info("Adding '{}' to GraalVM store '{}'", derivedKey, root);
+                copyTree(source, part);
+                customizer.accept(part);
+                Files.move(part, entry, StandardCopyOption.ATOMIC_MOVE);
+            }
+            relink(source, entry, tree);
+            register(derivedKey, tree, tree);
+            return derivedKey;
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't derive '" + key + "' for '" + tree + "'", e);
+        }
+    }
+
+    /**
+     * Deletes the entries no more referenced by an existing workspace.
+     *
+     * @return the deleted keys.
+     */
+    public Collection<String> gc() {
+        if (!Files.isDirectory(root)) {
+            return emptyList();
+        }
+        final List<String> keys;
+        try (final Stream<Path> list = Files.list(root)) {
+            keys = list
+                    .filter(Files::isDirectory)
+                    .map(it -> it.getFileName().toString())
+                    .filter(it -> !it.endsWith(".part"))
+                    .collect(toList());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return keys.stream().filter(this::gc).collect(toList());
+    }
+
+    private boolean gc(final String key) {
+        final Path refs = root.resolve(key + ".refs");
+        try (final InstallLock lock = InstallLock.acquire(root.resolve(key + ".lock"))) {
+            final List<String> alive = Files.exists(refs) ?
+                    Files.readAllLines(refs).stream().distinct().filter(ref -> isReferencing(key, ref)).collect(toList()) :
+                    emptyList();
+            if (!alive.isEmpty()) {
+                Files.write(refs, alive);
+                return false;
+            }
+            log.info("Deleting unused '{}' from GraalVM store '{}'", key, root);
+            delete(root.resolve(key));
+            Files.deleteIfExists(refs);
+            return true;
+        } catch (final IOException e) {
+            log.warn("Can't clean up '{}': {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    // a workspace can be deleted or reinstalled with another distribution
+    private boolean isReferencing(final String key, final String workspace) {
+        final Path marker = root.getFileSystem().getPath(workspace).resolve(MARKER);
+        try {
+            return Files.isRegularFile(marker) &&
+                    key.equals(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim());
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private void register(final String key, final Path target, final Path workspace) throws IOException {
+        Files.write(target.resolve(MARKER), key.getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve(key + ".refs"), (workspace.toAbsolutePath().normalize() + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // hard links the files of source in target (files are copied if not possible), symbolic links are recreated
+    private boolean linkTree(final Path source, final Path target) throws IOException {
+        boolean link = true;
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(source)) {
+            files = walk.collect(toList());
+        }
+        for (final Path file : files) {
+            final Path relative = source.relativize(file);
+            if (MARKER.equals(relative.toString())) {
+                continue;
+            }
+            final Path dest = target.resolve(relative.toString());
+            if (Files.isSymbolicLink(file)) {
+                Files.createDirectories(dest.getParent());
+                Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+            } else if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(dest);
+            } else {
+                Files.createDirectories(dest.getParent());
+                if (link) {
+                    try {
+                        Files.createLink(dest, file);
+                        continue;
+                    } catch (final FileSystemException | UnsupportedOperationException e) { // other file system
+                        log.debug("Can't link '{}', will copy files: {}", file, e.getMessage());
+                        link = false;
+                    }
+                }
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+        return link;
+    }
+
+    private void copyTree(final Path source, final Path target) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(source)) {
+            files = walk.collect(toList());
+        }
+        for (final Path file : files) {
+            final Path dest = target.resolve(source.relativize(file).toString());
+            if (Files.isSymbolicLink(file)) {
+                Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+            } else if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(dest);
+            } else {
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+    }
+
+    // links the files of entry in tree when missing or still linked to the previous entry, workspace files are kept
+    private void relink(final Path previous, final Path entry, final Path tree) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(entry)) {
+            files = walk.collect(toList());
+        }
+        for (final Path file : files) {
+            final String relative = entry.relativize(file).toString();
+            if (MARKER.equals(relative)) {
+                continue;
+            }
+            final Path dest = tree.resolve(relative);
+            if (Files.isSymbolicLink(file)) {
+                if (!Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+                }
+            } else if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(dest);
+            } else {
+                final Path original = previous.resolve(relative);
+                if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!Files.exists(original) || !Files.isSameFile(dest, original)) {
+                        continue;
+                    }
+                    Files.delete(dest);
+                }
+                try {
+                    Files.createLink(dest, file);
+                } catch (final FileSystemException | UnsupportedOperationException e) {
+                    Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+
+    private void delete(final Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (final Stream<Path> files = Files.walk(folder)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
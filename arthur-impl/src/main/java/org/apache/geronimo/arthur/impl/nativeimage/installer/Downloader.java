@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP download with timeouts, resume from a `.part` file, parallel ranges when the server supports them
+ * and SHA-256 verification (configured or published next to the file as `<url>.sha256`).
+ *
+ * Parallel ranges are written at their position in a preallocated `.part`, the chunk layout and progress
+ * are stored in `.part.layout` to resume each range, a layout change (length or connections) restarts the download.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class Downloader {
+    static final long MIN_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final long LAYOUT_STORE_INTERVAL = 1024 * 1024;
+    private static final int RETRIES = 3;
+
+    private final String url;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int connections;
+
+    /**
+     * @return the resolved (after redirections) url, length and ranges support of the download.
+     */
+    public Probe probe() {
+        try {
+            final HttpURLConnection connection = open(new URL(url));
+            connection.setRequestMethod("HEAD");
+            try {
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    return new Probe(
+                            connection.getURL(), connection.getContentLengthLong(),
+                            "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges")));
+                }
+                log.debug("HEAD {} returned HTTP {}", url, connection.getResponseCode());
+                return new Probe(new URL(url), -1, false);
+            } finally {
+                connection.disconnect();
+            }
+        } catch (final IOException ioe) { // HEAD not supported, fallback on a plain download
+            log.debug("Can't probe {}: {}", url, ioe.getMessage());
+            try {
+                return new Probe(new URL(url), -1, false);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * @param probe the download metadata.
+     * @return true if the download should use ranges (resume or parallel download when more than one connection is allowed).
+     */
+    public boolean useRanges(final Probe probe, final Path target) {
+        return probe.isRanges() && (Files.exists(part(target)) || chunks(probe, target) > 1);
+    }
+
+    /**
+     * Downloads the file in `target.part` then moves it to target once verified.
+     *
+     * @param probe          the download metadata.
+     * @param target         the final file.
+     * @param expectedSha256 the expected SHA-256, if null the published one is used if any.
+     * @return the SHA-256 of the downloaded file.
+     * @throws IOException if the download fails.
+     */
+    public String download(final Probe probe, final Path target, final String expectedSha256) throws IOException {
+        final Path part = part(target);
+        final int chunks = chunks(probe, target);
+        if (chunks == 1) {
+            if (Files.exists(layout(part))) { // parallel download resumed with a single connection
+                log.info("Download layout of {} changed, restarting it", part);
+                Files.deleteIfExists(part);
+                Files.delete(layout(part));
+            }
+            downloadRange(probe.getUrl(), part, 0, probe.getLength(), probe.isRanges());
+        } else {
+            log.info("Downloading {} with {} connections", probe.getUrl(), chunks);
+            downloadChunks(probe, part, chunks);
+        }
+        if (probe.getLength() > 0 && Files.size(part) != probe.getLength()) {
+            Files.delete(part);
+            throw new IllegalStateException("Truncated download of " + probe.getUrl() +
+                    ", expected " + probe.getLength() + " bytes");
+        }
+
+        final MessageDigest digest = newDigest();
+        try (final InputStream stream = new DigestInputStream(Files.newInputStream(part), digest)) {
+            final byte[] buffer = new byte[8192];
+            while (stream.read(buffer) >= 0) {
+                // no-op
+            }
+        }
+        final String sha256;
+        try {
+            sha256 = verify(digest, expectedSha256 != null ? expectedSha256 : publishedSha256(probe));
+        } catch (final IllegalStateException ise) {
+            Files.delete(part); // corrupted, don't resume it
+            Files.deleteIfExists(layout(part));
+            throw ise;
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(layout(part));
+        return sha256;
+    }
+
+    /**
+     * @param probe the download metadata.
+     * @return the SHA-256 published as `<url>.sha256` (as GitHub releases do) or null.
+     */
+    public String publishedSha256(final Probe probe) {
+        try {
+            final HttpURLConnection connection = open(new URL(probe.getUrl().toExternalForm() + ".sha256"));
+            try {
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                try (final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                    final String line = reader.readLine();
+                    if (line == null) {
+                        return null;
+                    }
+                    final String sha256 = line.trim().split("\\s+")[0];
+                    return sha256.matches("[0-9a-fA-F]{64}") ? sha256 : null;
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } catch (final IOException ioe) {
+            log.debug("No published checksum for {}: {}", probe.getUrl(), ioe.getMessage());
+            return null;
+        }
+    }
+
+    HttpURLConnection open(final URL source) throws IOException {
+        final HttpURLConnection connection = HttpURLConnection.class.cast(source.openConnection());
+        connection.setUseCaches(false);
+        connection.setInstanceFollowRedirects(true); // sdkman broker redirects on github
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        return connection;
+    }
+
+    private int chunks(final Probe probe, final Path target) {
+        final Path part = part(target);
+        if (!probe.isRanges() || probe.getLength() <= 0 ||
+                (Files.exists(part) && !Files.exists(layout(part)))) { // resume a single connection download
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(connections, probe.getLength() / MIN_CHUNK_SIZE));
+    }
+
+    private void downloadChunks(final Probe probe, final Path part, final int chunks) throws IOException {
+        final long length = probe.getLength();
+        final long chunkSize = length / chunks;
+        final AtomicLongArray done = loadLayout(part, length, chunks);
+        if (!Files.exists(part)) {
+            storeLayout(part, length, done); // before the part to never resume a preallocated part as a sequential one
+            try (final RandomAccessFile file = new RandomAccessFile(part.toFile(), "rw")) {
+                file.setLength(length);
+            }
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(chunks, r -> {
+            final Thread thread = new Thread(r, "arthur-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (final FileChannel channel = FileChannel.open(part, WRITE)) {
+            final List<Future<?>> futures = IntStream.range(0, chunks)
+                    .mapToObj(i -> pool.submit(() -> {
+                        final long start = i * chunkSize;
+                        final long end = i == chunks - 1 ? length : start + chunkSize;
+                        downloadChunk(probe.getUrl(), channel, i, start, end, done, part, length);
+                        return null;
+                    }))
+                    .collect(toList());
+            IOException error = null;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (final ExecutionException e) {
+                    final IOException cause = IOException.class.isInstance(e.getCause()) ?
+                            IOException.class.cast(e.getCause()) : new IOException(e.getCause());
+                    if (error == null) {
+                        error = cause;
+                    } else {
+                        error.addSuppressed(cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            pool.shutdownNow();
+            if (Files.exists(part)) { // progress of each range, used to resume
+                storeLayout(part, length, done);
+            }
+        }
+    }
+
+    private void downloadChunk(final URL source, final FileChannel channel, final int index,
+                               final long start, final long end, final AtomicLongArray done,
+                               final Path part, final long length) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            final long position = start + done.get(index);
+            if (position >= end) {
+                return;
+            }
+
+            final HttpURLConnection connection = open(source);
+            connection.setRequestProperty("Range", "bytes=" + position + "-" + (end - 1));
+            try {
+                final int status = connection.getResponseCode();
+                if (status != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException("HTTP " + status + " for range " + position + "-" + (end - 1) + " of " + source);
+                }
+                if (position > start) {
+                    log.info("Resuming download of {} at byte {}", source, position);
+                }
+                long sinceStore = 0;
+                try (final InputStream stream = connection.getInputStream()) {
+                    final byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0 && start + done.get(index) < end) {
+                        final int count = (int) Math.min(read, end - start - done.get(index));
+                        final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                        long offset = start + done.get(index);
+                        while (bytes.hasRemaining()) {
+                            offset += channel.write(bytes, offset);
+                        }
+                        done.addAndGet(index, count);
+                        sinceStore += count;
+                        if (sinceStore >= LAYOUT_STORE_INTERVAL) { // bounds what is downloaded again after a crash
+                            sinceStore = 0;
+                            storeLayout(part, length, done);
+                        }
+                    }
+                }
+                if (start + done.get(index) != end) {
+                    throw new IOException("Connection closed before the end of range " + start + "-" + (end - 1) + " of " + source);
+                }
+                return;
+            } catch (final IOException ioe) {
+                if (attempt >= RETRIES) {
+                    throw ioe;
+                }
+                log.warn("Download of {} interrupted ({}), retrying", source, ioe.getMessage());
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    // a layout (length, chunks) change makes the existing ranges invalid so the download restarts
+    private AtomicLongArray loadLayout(final Path part, final long length, final int chunks) throws IOException {
+        final Path layout = layout(part);
+        if (Files.exists(part) && Files.exists(layout)) {
+            final Properties properties = new Properties();
+            try (final InputStream stream = Files.newInputStream(layout)) {
+                properties.load(stream);
+            }
+            if (Long.toString(length).equals(properties.getProperty("length")) &&
+                    Integer.toString(chunks).equals(properties.getProperty("chunks"))) {
+                final AtomicLongArray done = new AtomicLongArray(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    done.set(i, Long.parseLong(properties.getProperty("chunk." + i, "0")));
+                }
+                return done;
+            }
+            log.info("Download layout of {} changed, restarting it", part);
+        }
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(layout);
+        return new AtomicLongArray(chunks);
+    }
+
+    private synchronized void storeLayout(final Path part, final long length, final AtomicLongArray done) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("length", Long.toString(length));
+        properties.setProperty("chunks", Integer.toString(done.length()));
+        for (int i = 0; i < done.length(); i++) {
+            properties.setProperty("chunk." + i, Long.toString(done.get(i)));
+        }
+        final Path layout = layout(part);
+        final Path tmp = layout.resolveSibling(layout.getFileName() + ".tmp");
+        try (final OutputStream stream = Files.newOutputStream(tmp)) {
+            properties.store(stream, "Arthur download progress");
+        }
+        Files.move(tmp, layout, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // end is exclusive, -1 if unknown
+    private void downloadRange(final URL source, final Path file, final long start, final long end,
+                               final boolean ranges) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            final long done = ranges && Files.exists(file) ? Files.size(file) : 0;
+            if (end >= 0 && done >= end - start) {
+                return;
+            }
+
+            final HttpURLConnection connection = open(source);
+            if (ranges) {
+                connection.setRequestProperty("Range", "bytes=" + (start + done) + "-" + (end < 0 ? "" : Long.toString(end - 1)));
+            }
+            try {
+                final int status = connection.getResponseCode();
+                final boolean append = status == HttpURLConnection.HTTP_PARTIAL;
+                if (!append && status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP " + status + " for " + source);
+                }
+                if (!append && start > 0) {
+                    throw new IOException("Server ignored the range request for " + source);
+                }
+                if (done > 0 && append) {
+                    log.info("Resuming download of {} at byte {}", source, start + done);
+                }
+                try (final InputStream stream = connection.getInputStream();
+                     final OutputStream output = append ?
+                             Files.newOutputStream(file, CREATE, APPEND, WRITE) :
+                             Files.newOutputStream(file, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                    final byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+                if (end >= 0 && Files.size(file) != end - start) {
+                    throw new IOException("Connection closed before the end of " + source);
+                }
+                return;
+            } catch (final IOException ioe) {
+                if (attempt >= RETRIES) {
+                    throw ioe;
+                }
+                log.warn("Download of {} interrupted ({}), retrying", source, ioe.getMessage());
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private Path part(final Path target) {
+        return target.resolveSibling(target.getFileName() + ".part");
+    }
+
+    private Path layout(final Path part) {
+        return part.resolveSibling(part.getFileName() + ".layout");
+    }
+
+    static String verify(final MessageDigest digest, final String expected) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        final String sha256 = hex.toString();
+        if (expected != null && !expected.equalsIgnoreCase(sha256)) {
+            throw new IllegalStateException(
+                    "Invalid checksum, expected '" + expected + "' but got '" + sha256 + "'");
+        }
+        return sha256;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Probe {
+        private final URL url;
+        private final long length;
+        private final boolean ranges;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds an already installed GraalVM matching the requested version (validated with its `release` file)
+ * to avoid to download and extract it.
+ * These homes are not owned by Arthur so only the ones already providing native-image are used, they are never modified.
+ */
+@Slf4j
+public class LocalGraalVMFinder {
+    private static final Pattern VERSION = Pattern.compile("(\\d+(?:\\.\\d+)*)(?:\\.r(\\d+))?(?:-grl)?");
+
+    private final String graalVersion;
+    private final String javaVersion;
+
+    /**
+     * @param version the GraalVM version (SDKMan flavor), ex: `19.2.1` or `20.3.0.r11`.
+     */
+    public LocalGraalVMFinder(final String version) {
+        final Matcher matcher = VERSION.matcher(version);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unsupported GraalVM version: '" + version + "'");
+        }
+        this.graalVersion = matcher.group(1);
+        this.javaVersion = matcher.group(2);
+    }
+
+    /**
+     * @param candidates homes to test (in order).
+     * @return the first matching GraalVM home.
+     */
+    public Optional<Path> find(final Collection<Path> candidates) {
+        return candidates.stream()
+                .filter(this::matches)
+                .findFirst();
+    }
+
+    /**
+     * @param env environment variables.
+     * @return `GRAALVM_HOME`, `JAVA_HOME` and SDKMan GraalVM candidates.
+     */
+    public static List<Path> defaultCandidates(final Map<String, String> env) {
+        final List<Path> candidates = new ArrayList<>();
+        ofNullable(env.get("GRAALVM_HOME")).map(Paths::get).ifPresent(candidates::add);
+        ofNullable(env.get("JAVA_HOME")).map(Paths::get).ifPresent(candidates::add);
+        final Path sdkman = ofNullable(env.get("SDKMAN_DIR")).map(Paths::get)
+                .orElseGet(() -> Paths.get(System.getProperty("user.home", "."), ".sdkman"))
+                .resolve("candidates/java");
+        if (Files.isDirectory(sdkman)) {
+            try (final Stream<Path> list = Files.list(sdkman)) {
+                candidates.addAll(list
+                        .filter(it -> it.getFileName().toString().endsWith("-grl"))
+                        .sorted(Comparator.comparing(Path::getFileName).reversed())
+                        .collect(toList()));
+            } catch (final IOException e) {
+                log.debug("Can't list '{}': {}", sdkman, e.getMessage());
+            }
+        }
+        return candidates;
+    }
+
+    boolean matches(final Path home) {
+        final Path release = home.resolve("release");
+        if (!Files.isRegularFile(release) || !Files.isDirectory(home.resolve("bin"))) {
+            return false;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(release)) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            log.debug("Can't read '{}': {}", release, e.getMessage());
+            return false;
+        }
+        final String graal = unquote(properties.getProperty("GRAALVM_VERSION"));
+        if (!graalVersion.equals(graal)) {
+            log.debug("'{}' is not GraalVM {} ({})", home, graalVersion, graal);
+            return false;
+        }
+        if (!hasNativeImage(home.resolve("bin"))) {
+            log.info("'{}' is GraalVM {} but has no native-image (install it with gu to use it), ignoring it", home, graalVersion);
+            return false;
+        }
+        if (javaVersion != null) {
+            final String java = unquote(properties.getProperty("JAVA_VERSION"));
+            if (java == null || !javaVersion.equals(java.startsWith("1.") ? java.split("\\.")[1] : java.split("\\.")[0])) {
+                log.debug("'{}' is not GraalVM for Java {} ({})", home, javaVersion, java);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasNativeImage(final Path bin) {
+        return Stream.of("native-image", "native-image.cmd", "native-image.exe").map(bin::resolve).anyMatch(Files::isRegularFile);
+    }
+
+    private static String unquote(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String trimmed = value.trim();
+        return trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"") ?
+                trimmed.substring(1, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -17,18 +17,33 @@
 package org.apache.geronimo.arthur.impl.nativeimage.installer;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
 import java.util.stream.Stream;
 
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
 import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessExecutor;
 
 import lombok.RequiredArgsConstructor;
@@ -37,11 +52,28 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @RequiredArgsConstructor
 public class SdkmanGraalVMInstaller {
+    private static final String EXTRACTED = ".arthur.extracted";
+    private static final String INSTALLED = ".arthur.installed";
+    private static final String LOCK = "distribution.lock";
+
     private final SdkmanGraalVMInstallerConfiguration configuration;
 
     private Path home;
+    private Path archive;
+    private boolean local;
 
     public Path install() {
+        if (configuration.getLocalHomes() != null && !configuration.getLocalHomes().isEmpty()) {
+            final Optional<Path> local = new LocalGraalVMFinder(configuration.getVersion()).find(configuration.getLocalHomes());
+            if (local.isPresent()) {
+                log.info("Using local GraalVM '{}'", local.get());
+                this.archive = null;
+                this.local = true;
+                return home = local.get();
+            }
+            log.debug("No local GraalVM {} found in {}", configuration.getVersion(), configuration.getLocalHomes());
+        }
+
         Path archive;
         try {
             archive = configuration.getResolver().apply(configuration.getGav());
@@ -49,6 +81,11 @@ public class SdkmanGraalVMInstaller {
             if (configuration.isOffline()) {
                 throw new IllegalStateException("GraalVM was not found and mvn runs offline");
             }
+            if (configuration.getLocalPath() != null && configuration.getStreamExtractor() != null) {
+                log.info("Downloading and extracting GraalVM {}, this can be long", configuration.getVersion());
+                this.archive = configuration.getLocalPath().apply(configuration.getGav());
+                return home = downloadAndExtract(this.archive);
+            }
             try {
                 if (!Files.exists(configuration.getWorkdir())) {
                     Files.createDirectories(configuration.getWorkdir());
@@ -66,21 +103,76 @@ public class SdkmanGraalVMInstaller {
         if (!Files.exists(archive)) {
             throw new IllegalStateException("No graal archive available: " + archive);
         }
+        this.archive = archive;
 
         final Path exploded = archive.getParent().resolve("distribution_exploded");
-        if (!Files.isDirectory(exploded)) {
-            configuration.getExtractor().accept(archive, exploded);
+        if (!isInstalled(exploded, archive)) {
+            try (final InstallLock lock = InstallLock.acquire(archive.resolveSibling(LOCK))) {
+                if (!isInstalled(exploded, archive)) { // not done by a concurrent build while we were waiting
+                    extract(archive, exploded);
+                }
+            }
         }
         return home = exploded;
     }
 
+    /**
+     * When the distribution was selectively extracted, extracts the entries matching these globs from the cached archive.
+     * Already extracted globs are tracked in the home to avoid to read the archive again.
+     *
+     * @param globs the entries to ensure are extracted (relative to GraalVM home).
+     * @return the GraalVM home.
+     */
+    public Path ensureExtracted(final String... globs) {
+        requireNonNull(this.home, "No home, ensure to call install() before ensureExtracted()");
+        final ExtractionFilter filter = configuration.getExtractionFilter();
+        if (filter == null || !filter.isSelective() || archive == null ||
+                configuration.getPartialExtractor() == null || !Files.exists(archive)) {
+            return home;
+        }
+        final Path extracted = home.resolve(EXTRACTED);
+        try {
+            final Collection<String> done = Files.exists(extracted) ? Files.readAllLines(extracted) : emptyList();
+            final List<String> missing = Stream.of(globs)
+                    .filter(glob -> !done.contains(glob))
+                    // already covered by the initial extraction (wildcards replaced by a sample name)
+                    .filter(glob -> !filter.test(glob.replace("**", "x").replace('*', 'x').replace('?', 'x')))
+                    .filter(glob -> glob.contains("*") || glob.contains("?") || !Files.exists(home.resolve(glob)))
+                    .collect(toList());
+            if (missing.isEmpty()) {
+                return home;
+            }
+            try (final InstallLock lock = InstallLock.acquire(archive.resolveSibling(LOCK))) {
+                log.info("Extracting {} from '{}'", missing, archive);
+                configuration.getPartialExtractor().extract(archive, home, new ExtractionFilter(missing, emptyList()));
+                Files.write(extracted, missing, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return home;
+    }
+
     public Path installNativeImage() {
         final Path bin = requireNonNull(this.home, "No home, ensure to call install() before installNativeImage()")
                 .resolve("bin");
         try {
             if (findNativeImage(bin).count() == 0) { // likely only UNIx, windows comes with native-image.cmd
-                log.info("Installing native-image");
-                new ProcessExecutor(configuration.isInheritIO(), asList(findGu(bin).toAbsolutePath().toString(), "install", "native-image")).run();
+                if (local) { // LocalGraalVMFinder only selects homes with native-image, never modify a user installation
+                    throw new IllegalStateException("No native-image in local GraalVM '" + home + "'");
+                }
+                try (final InstallLock lock = InstallLock.acquire(home.resolveSibling(LOCK))) {
+                    if (findNativeImage(bin).count() == 0) {
+                        final ContentStore store = configuration.getContentStore();
+                        final String key = store == null ? null : store.linkedKey(home);
+                        if (key != null) { // gu would modify files shared with other workspaces, install it on a store copy
+                            store.derive(key, "native-image", home, this::runGu);
+                        } else {
+                            runGu(home);
+                        }
+                        updateInstalledFiles();
+                    }
+                }
             } else {
                 log.debug("native-image is already available");
             }
@@ -92,6 +184,69 @@ public class SdkmanGraalVMInstaller {
         }
     }
 
+    // only for distributions extracted by arthur (local homes are rejected before)
+    private void runGu(final Path graalHome) {
+        final Path component = findNativeImageComponent();
+        final String gu = findGu(graalHome.resolve("bin")).toAbsolutePath().toString();
+        if (component != null) {
+            log.info("Installing native-image from '{}'", component);
+            new ProcessExecutor(configuration.isInheritIO(), asList(gu, "-L", "install", component.toAbsolutePath().toString())).run();
+        } else {
+            log.info("Installing native-image");
+            new ProcessExecutor(configuration.isInheritIO(), asList(gu, "install", "native-image")).run();
+        }
+    }
+
+    // the component jar is cached next to the distribution archive, downloading it only if not already there
+    private Path findNativeImageComponent() {
+        final String gav = configuration.getNativeImageComponentGav();
+        if (gav == null) {
+            return null;
+        }
+        try {
+            return configuration.getResolver().apply(gav);
+        } catch (final IllegalStateException ise) {
+            if (configuration.isOffline()) {
+                throw new IllegalStateException("native-image component " + gav + " was not found and mvn runs offline");
+            }
+            if (configuration.getNativeImageComponentUrl() == null) {
+                return null;
+            }
+        }
+        try {
+            Files.createDirectories(configuration.getWorkdir());
+            final String url = configuration.getNativeImageComponentUrl();
+            final Path download = configuration.getWorkdir().resolve(url.substring(url.lastIndexOf('/') + 1));
+            if (!Files.exists(download)) {
+                log.info("Downloading native-image component from '{}'", url);
+                final Downloader downloader = new Downloader(
+                        url, configuration.getConnectTimeout(), configuration.getReadTimeout(),
+                        Math.max(1, configuration.getConnections()));
+                downloader.download(downloader.probe(), download, null);
+            }
+            return configuration.getInstaller().apply(gav, download);
+        } catch (final IOException | IllegalStateException e) {
+            log.warn("Can't download native-image component ({}), will use gu catalog", e.getMessage());
+            return null;
+        }
+    }
+
+    // the post-install tree is the new reference: a deleted component file triggers a reinstallation
+    private void updateInstalledFiles() throws IOException {
+        final Path markerFile = home.resolve(INSTALLED);
+        if (local || !Files.exists(markerFile)) { // not extracted by arthur
+            return;
+        }
+        final Properties marker = new Properties();
+        try (final InputStream stream = Files.newInputStream(markerFile)) {
+            marker.load(stream);
+        }
+        marker.setProperty("files", Long.toString(countFiles(home)));
+        try (final OutputStream stream = Files.newOutputStream(markerFile)) {
+            marker.store(stream, "Arthur GraalVM installation");
+        }
+    }
+
     private Stream<Path> findNativeImage(final Path bin) throws IOException {
         return Files.list(bin).filter(path -> path.getFileName().toString().startsWith("native-image"));
     }
@@ -113,19 +268,269 @@ public class SdkmanGraalVMInstaller {
         if (Files.exists(cache)) {
             return cache;
         }
+        final Downloader downloader = newDownloader();
+        downloader.download(downloader.probe(), cache, configuration.getSha256());
+        return cache;
+    }
 
-        final URL source = new URL(configuration.getUrl());
-        final HttpURLConnection connection = HttpURLConnection.class.cast(source.openConnection());
-        connection.setUseCaches(false);
-        connection.setInstanceFollowRedirects(true); // sdkman broker redirects on github
-        try (final InputStream stream = new BufferedInputStream(connection.getInputStream())) {
-            Files.copy(stream, cache);
-        } catch (final IOException ioe) {
-            if (Files.exists(cache)) {
-                Files.delete(cache);
+    // by default the archive is written in the local repository while being extracted and its checksum computed (single pass),
+    // when more than one connection is configured or a previous download must be resumed, and the server supports it,
+    // it is downloaded with ranges (resumable, parallel) in the local repository then extracted.
+    // in both cases archive and exploded folder are moved to their final location only on success
+    private Path downloadAndExtract(final Path archive) {
+        final Path exploded = archive.resolveSibling("distribution_exploded");
+        try (final InstallLock lock = InstallLock.acquire(archive.resolveSibling(LOCK))) {
+            if (Files.exists(archive) && isInstalled(exploded, archive)) { // concurrent build did it
+                return exploded;
+            }
+            return downloadAndExtract(archive, exploded);
+        }
+    }
+
+    private Path downloadAndExtract(final Path archive, final Path exploded) {
+        final Path archivePart = archive.resolveSibling(archive.getFileName() + ".part");
+        final Path explodedPart = archive.resolveSibling(exploded.getFileName() + ".part");
+        final Downloader downloader = newDownloader();
+        final Downloader.Probe probe = downloader.probe();
+        final boolean ranged = downloader.useRanges(probe, archive);
+        try {
+            Files.createDirectories(archive.getParent());
+            delete(explodedPart);
+
+            final String sha256;
+            if (ranged) {
+                try {
+                    sha256 = downloader.download(probe, archive, configuration.getSha256());
+                } catch (final IOException ioe) { // keep the .part to resume next time
+                    throw new IllegalStateException("Can't download GraalVM in '" + archive + "', rerun the build to resume it", ioe);
+                }
+                extract(archive, sha256, explodedPart, exploded);
+            } else {
+                final MessageDigest digest = Downloader.newDigest();
+                try (final InputStream stream = new DigestInputStream(new BufferedInputStream(downloader.open(probe.getUrl()).getInputStream()), digest);
+                     final OutputStream cache = new BufferedOutputStream(Files.newOutputStream(archivePart))) {
+                    final TeeInputStream tee = new TeeInputStream(stream, cache);
+                    configuration.getStreamExtractor().extract(tee, "zip".equals(configuration.getGav().split(":")[2]), explodedPart);
+                    tee.drain(); // archive trailer (padding, central directory) must be cached too
+                }
+                sha256 = Downloader.verify(digest, configuration.getSha256() != null ?
+                        configuration.getSha256() : downloader.publishedSha256(probe));
+                Files.move(archivePart, archive, StandardCopyOption.ATOMIC_MOVE);
+                if (configuration.getContentStore() != null) {
+                    configuration.getContentStore().adopt(
+                            ContentStore.key(sha256, configuration.getExtractionFilter()), explodedPart, exploded);
+                }
+            }
+            Files.write(archive.resolveSibling(archive.getFileName() + ".sha256"), sha256.getBytes(StandardCharsets.US_ASCII));
+            commit(explodedPart, exploded, sha256);
+            gc();
+            return exploded;
+        } catch (final IOException | RuntimeException e) {
+            try {
+                // a streamed download interrupted by a network error is a valid prefix, it is resumed with ranges next time
+                if (!ranged && !(IOException.class.isInstance(e) && probe.isRanges() && probe.getLength() > 0)) {
+                    Files.deleteIfExists(archivePart);
+                }
+                delete(explodedPart);
+            } catch (final IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            if (IOException.class.isInstance(e)) {
+                throw new IllegalStateException("Can't install GraalVM in '" + archive + "'", e);
+            }
+            throw RuntimeException.class.cast(e);
+        }
+    }
+
+    // must be called with the install lock
+    private void extract(final Path archive, final Path exploded) {
+        final Path explodedPart = exploded.resolveSibling(exploded.getFileName() + ".part");
+        try {
+            delete(explodedPart);
+            final String sha256 = sha256(archive);
+            extract(archive, sha256, explodedPart, exploded);
+            commit(explodedPart, exploded, sha256);
+            gc();
+        } catch (final IOException | RuntimeException e) {
+            try {
+                delete(explodedPart);
+            } catch (final IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            if (IOException.class.isInstance(e)) {
+                throw new IllegalStateException("Can't extract '" + archive + "'", e);
+            }
+            throw RuntimeException.class.cast(e);
+        }
+    }
+
+    // with a content store the workspace gets links to the shared extraction instead of its own copy
+    private void extract(final Path archive, final String sha256, final Path explodedPart, final Path exploded) {
+        final ContentStore store = configuration.getContentStore();
+        if (store == null) {
+            configuration.getExtractor().accept(archive, explodedPart);
+            return;
+        }
+        store.link(ContentStore.key(sha256, configuration.getExtractionFilter()), explodedPart, exploded,
+                entry -> configuration.getExtractor().accept(archive, entry));
+    }
+
+    private void gc() {
+        if (configuration.getContentStore() != null) {
+            configuration.getContentStore().gc();
+        }
+    }
+
+    // writes the completion marker then atomically makes the extracted folder visible, replacing a corrupted one if any
+    private void commit(final Path explodedPart, final Path exploded, final String sha256) throws IOException {
+        final Properties marker = new Properties();
+        marker.setProperty("files", Long.toString(countFiles(explodedPart)));
+        marker.setProperty("sha256", sha256);
+        try (final OutputStream stream = Files.newOutputStream(explodedPart.resolve(INSTALLED))) {
+            marker.store(stream, "Arthur GraalVM installation");
+        }
+        if (Files.exists(exploded)) {
+            log.warn("Replacing incomplete GraalVM installation '{}'", exploded);
+            delete(exploded);
+        }
+        Files.move(explodedPart, exploded, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean isInstalled(final Path exploded, final Path archive) {
+        final Path markerFile = exploded.resolve(INSTALLED);
+        if (!Files.isDirectory(exploded)) {
+            return false;
+        }
+        if (!Files.exists(markerFile)) {
+            log.warn("'{}' has no completion marker, it will be reinstalled", exploded);
+            return false;
+        }
+        final Properties marker = new Properties();
+        try (final InputStream stream = Files.newInputStream(markerFile)) {
+            marker.load(stream);
+            // files can be added (gu, lazy extraction) but not removed
+            final long files = countFiles(exploded);
+            if (files < Long.parseLong(marker.getProperty("files", "0"))) {
+                log.warn("'{}' misses files ({} < {}), it will be reinstalled", exploded, files, marker.getProperty("files"));
+                return false;
+            }
+            final Path checksum = archive.resolveSibling(archive.getFileName() + ".sha256");
+            if (Files.isRegularFile(checksum) && !new String(Files.readAllBytes(checksum), StandardCharsets.US_ASCII).trim()
+                    .equalsIgnoreCase(marker.getProperty("sha256", ""))) {
+                log.warn("'{}' does not match '{}', it will be reinstalled", exploded, archive);
+                return false;
+            }
+            return true;
+        } catch (final IOException | NumberFormatException e) {
+            log.warn("Can't check '{}': {}", exploded, e.getMessage());
+            return false;
+        }
+    }
+
+    private long countFiles(final Path folder) throws IOException {
+        try (final Stream<Path> files = Files.walk(folder)) {
+            return files
+                    .filter(it -> !Files.isDirectory(it, LinkOption.NOFOLLOW_LINKS))
+                    .filter(it -> !INSTALLED.equals(it.getFileName().toString()))
+                    .count();
+        }
+    }
+
+    private String sha256(final Path archive) throws IOException {
+        final Path checksum = archive.resolveSibling(archive.getFileName() + ".sha256");
+        if (Files.isRegularFile(checksum)) {
+            return new String(Files.readAllBytes(checksum), StandardCharsets.US_ASCII).trim();
+        }
+        if (!Files.isRegularFile(archive)) {
+            return "";
+        }
+        final MessageDigest digest = Downloader.newDigest();
+        try (final InputStream stream = new DigestInputStream(Files.newInputStream(archive), digest)) {
+            final byte[] buffer = new byte[8192];
+            while (stream.read(buffer) >= 0) {
+                // no-op
+            }
+        }
+        final String sha256 = Downloader.verify(digest, null);
+        Files.write(checksum, sha256.getBytes(StandardCharsets.US_ASCII));
+        return sha256;
+    }
+
+    private Downloader newDownloader() {
+        return new Downloader(
+                configuration.getUrl(), configuration.getConnectTimeout(), configuration.getReadTimeout(),
+                Math.max(1, configuration.getConnections()));
+    }
+
+    private void delete(final Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (final Stream<Path> files = Files.walk(folder)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Copies what is read to an output stream, close is ignored to let the caller drain the stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        private TeeInputStream(final InputStream delegate, final OutputStream copy) {
+            super(delegate);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read >= 0) {
+                copy.write(read);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                copy.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 1))];
+            long skipped = 0;
+            while (skipped < n) {
+                final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+
+        private void drain() throws IOException {
+            final byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // no-op
             }
-            throw ioe;
         }
-        return cache;
     }
 }
@@ -16,11 +16,15 @@
  */
 package org.apache.geronimo.arthur.impl.nativeimage.installer;
 
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
+
 import lombok.Builder;
 import lombok.Data;
 
@@ -37,4 +41,79 @@ public class SdkmanGraalVMInstallerConfiguration {
     private final Function<String, Path> resolver;
     private final BiFunction<String, Path, Path> installer;
     private final BiConsumer<Path, Path> extractor;
+
+    /**
+     * If set, the local repository location of the archive gav.
+     * It enables to extract the archive while downloading it directly in the local repository
+     * instead of downloading, installing then extracting it.
+     */
+    private final Function<String, Path> localPath;
+
+    /**
+     * Extractor used when the archive is downloaded in the local repository ({@link #localPath}).
+     */
+    private final StreamExtractor streamExtractor;
+
+    /**
+     * Expected SHA-256 of the archive (hexadecimal), if set the download fails when it does not match.
+     */
+    private final String sha256;
+
+    /**
+     * Download connect timeout in milliseconds (0 means no timeout).
+     */
+    private final int connectTimeout;
+
+    /**
+     * Download read timeout in milliseconds (0 means no timeout).
+     */
+    private final int readTimeout;
+
+    /**
+     * Maximum number of parallel connections (range requests) used to download the archive,
+     * with one connection the archive is extracted while being downloaded.
+     */
+    private final int connections;
+
+    /**
+     * Already installed GraalVM homes to use if one matches the version (see {@link LocalGraalVMFinder}).
+     */
+    private final Collection<Path> localHomes;
+
+    /**
+     * If set, the gav used to cache the native-image component (installable jar) in the local repository.
+     * It enables to install native-image with `gu -L` (no network) when the distribution is extracted again.
+     */
+    private final String nativeImageComponentGav;
+
+    /**
+     * Where to download the native-image component from when it is not cached ({@link #nativeImageComponentGav}),
+     * if not set or if the download fails, `gu install native-image` is used.
+     */
+    private final String nativeImageComponentUrl;
+
+    /**
+     * If set, extracted distributions are shared by workspaces through this store (hard links or copies).
+     */
+    private final ContentStore contentStore;
+
+    /**
+     * The filter used by the extractor if it does not extract the whole archive.
+     */
+    private final ExtractionFilter extractionFilter;
+
+    /**
+     * Extracts a subset of the archive, used to extract on demand what a selective extraction skipped.
+     */
+    private final PartialExtractor partialExtractor;
+
+    @FunctionalInterface
+    public interface PartialExtractor {
+        void extract(Path archive, Path exploded, ExtractionFilter filter);
+    }
+
+    @FunctionalInterface
+    public interface StreamExtractor {
+        void extract(InputStream stream, boolean zip, Path exploded);
+    }
 }
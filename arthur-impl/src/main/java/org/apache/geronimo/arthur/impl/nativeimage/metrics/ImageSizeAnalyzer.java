@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates a native-image dashboard dump (`-H:DashboardDump`, `-H:+DashboardCode`, `-H:+DashboardHeap`, `-H:+DashboardJson`)
+ * per type, package and registration origin.
+ * The dump is passed as a generic JSON structure (maps and lists) to not depend on a particular JSON library.
+ */
+public class ImageSizeAnalyzer {
+    public static final String UNREGISTERED = "reachable";
+
+    /**
+     * @param binary the binary name.
+     * @param dump the dashboard dump, code entries names are methods, heap entries names are types.
+     * @param registrationOrigins registration key (`reflection:<class>`) to origins (see DefautContext).
+     * @param top how many entries to keep per category.
+     * @return the report.
+     */
+    public ImageSizeReport analyze(final String binary, final Map<String, ?> dump,
+                                   final Map<String, ? extends Collection<String>> registrationOrigins,
+                                   final int top) {
+        final Map<String, ImageSizeReport.Entry> types = new HashMap<>();
+        final ImageSizeReport report = new ImageSizeReport();
+        report.setBinary(binary);
+        entries(dump.get("code-breakdown")).forEach(entry -> {
+            final long size = toLong(entry.get("size"));
+            final ImageSizeReport.Entry type = findEntry(types, toType(String.valueOf(entry.get("name"))));
+            type.setCodeSize(type.getCodeSize() + size);
+            report.setCodeSize(report.getCodeSize() + size);
+        });
+        entries(dump.get("heap-breakdown")).forEach(entry -> {
+            final long size = toLong(entry.get("size"));
+            final ImageSizeReport.Entry type = findEntry(types, String.valueOf(entry.get("name")));
+            type.setHeapSize(type.getHeapSize() + size);
+            report.setHeapSize(report.getHeapSize() + size);
+        });
+        types.values().forEach(type -> type.getOrigins().addAll(findOrigins(type.getName(), registrationOrigins)));
+
+        report.setTypes(top(types.values().stream(), top));
+        report.setPackages(top(group(types.values(), type -> {
+            final int sep = type.getName().lastIndexOf('.');
+            return sep < 0 ? "" : type.getName().substring(0, sep);
+        }), top));
+        final Map<String, ImageSizeReport.Entry> origins = new HashMap<>();
+        types.values().forEach(type -> (type.getOrigins().isEmpty() ? singletonList(UNREGISTERED) : type.getOrigins()).forEach(name -> {
+            final ImageSizeReport.Entry origin = findEntry(origins, name);
+            origin.setCodeSize(origin.getCodeSize() + type.getCodeSize());
+            origin.setHeapSize(origin.getHeapSize() + type.getHeapSize());
+        }));
+        report.setOrigins(top(origins.values().stream(), top));
+        return report;
+    }
+
+    public String toHtml(final ImageSizeReport report) {
+        final StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>")
+                .append(escape(report.getBinary())).append(" size report</title>\n")
+                .append("<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}")
+                .append("td,th{border:1px solid #ccc;padding:4px 8px;text-align:left}td.size{text-align:right}</style>\n")
+                .append("</head>\n<body>\n<h1>").append(escape(report.getBinary())).append("</h1>\n<p>Code: ")
+                .append(toMb(report.getCodeSize())).append(" MB, heap: ").append(toMb(report.getHeapSize())).append(" MB</p>\n");
+        appendTable(html, "Registration origins", report.getOrigins(), false);
+        appendTable(html, "Packages", report.getPackages(), false);
+        appendTable(html, "Types", report.getTypes(), true);
+        return html.append("</body>\n</html>\n").toString();
+    }
+
+    private void appendTable(final StringBuilder html, final String title, final List<ImageSizeReport.Entry> entries,
+                             final boolean withOrigins) {
+        html.append("<h2>").append(title).append("</h2>\n<table>\n<tr><th>Name</th><th>Total (kB)</th><th>Code (kB)</th><th>Heap (kB)</th>")
+                .append(withOrigins ? "<th>Registered by</th>" : "").append("</tr>\n");
+        entries.forEach(entry -> html.append("<tr><td>").append(escape(entry.getName())).append("</td>")
+                .append("<td class=\"size\">").append(entry.getSize() / 1024).append("</td>")
+                .append("<td class=\"size\">").append(entry.getCodeSize() / 1024).append("</td>")
+                .append("<td class=\"size\">").append(entry.getHeapSize() / 1024).append("</td>")
+                .append(withOrigins ? "<td>" + escape(String.join(", ", entry.getOrigins())) + "</td>" : "")
+                .append("</tr>\n"));
+        html.append("</table>\n");
+    }
+
+    private Collection<String> findOrigins(final String type, final Map<String, ? extends Collection<String>> registrationOrigins) {
+        String current = type;
+        while (true) { // nested classes are attributed to their enclosing class registration if not registered themselves
+            final Collection<String> origins = registrationOrigins.get("reflection:" + current);
+            if (origins != null) {
+                return origins;
+            }
+            final int nested = current.lastIndexOf('$');
+            if (nested < 0) {
+                return emptyList();
+            }
+            current = current.substring(0, nested);
+        }
+    }
+
+    private Stream<ImageSizeReport.Entry> group(final Collection<ImageSizeReport.Entry> types,
+                                                final Function<ImageSizeReport.Entry, String> key) {
+        final Map<String, ImageSizeReport.Entry> groups = new HashMap<>();
+        types.forEach(type -> {
+            final ImageSizeReport.Entry group = findEntry(groups, key.apply(type));
+            group.setCodeSize(group.getCodeSize() + type.getCodeSize());
+            group.setHeapSize(group.getHeapSize() + type.getHeapSize());
+        });
+        return groups.values().stream();
+    }
+
+    private List<ImageSizeReport.Entry> top(final Stream<ImageSizeReport.Entry> entries, final int top) {
+        return entries
+                .sorted(comparing(ImageSizeReport.Entry::getSize).reversed().thenComparing(ImageSizeReport.Entry::getName))
+                .limit(top)
+                .collect(toList());
+    }
+
+    private ImageSizeReport.Entry findEntry(final Map<String, ImageSizeReport.Entry> entries, final String name) {
+        return entries.computeIfAbsent(name, n -> {
+            final ImageSizeReport.Entry entry = new ImageSizeReport.Entry();
+            entry.setName(n);
+            return entry;
+        });
+    }
+
+    // "org.foo.Bar.method(java.lang.String)" -> "org.foo.Bar"
+    static String toType(final String method) {
+        final int parenthesis = method.indexOf('(');
+        final String name = parenthesis < 0 ? method : method.substring(0, parenthesis);
+        final int sep = name.lastIndexOf('.');
+        return sep < 0 ? name : name.substring(0, sep);
+    }
+
+    // the breakdown can be directly the list of entries or an object wrapping it (code-size/heap-size)
+    private Stream<Map<?, ?>> entries(final Object breakdown) {
+        if (breakdown instanceof Collection) {
+            return ((Collection<?>) breakdown).stream()
+                    .filter(Map.class::isInstance)
+                    .<Map<?, ?>>map(Map.class::cast)
+                    .filter(it -> it.containsKey("name") && it.containsKey("size"));
+        }
+        if (breakdown instanceof Map) {
+            return ((Map<?, ?>) breakdown).values().stream().flatMap(this::entries);
+        }
+        return Stream.empty();
+    }
+
+    private long toLong(final Object value) {
+        return value instanceof Number ? Number.class.cast(value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    private String toMb(final long size) {
+        return String.format("%.2f", size / (1024. * 1024));
+    }
+
+    private String escape(final String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import lombok.Data;
+
+/**
+ * Largest contributors of a native image size (compiled code and image heap).
+ */
+@Data
+public class ImageSizeReport {
+    private String binary;
+    private long codeSize;
+    private long heapSize;
+    private List<Entry> types = new ArrayList<>();
+    private List<Entry> packages = new ArrayList<>();
+
+    /**
+     * Size per registration origin (extension), types not registered by any extension are grouped in `reachable`.
+     */
+    private List<Entry> origins = new ArrayList<>();
+
+    @Data
+    public static class Entry {
+        private String name;
+        private long codeSize;
+        private long heapSize;
+        private Collection<String> origins = new TreeSet<>();
+
+        public long getSize() {
+            return codeSize + heapSize;
+        }
+    }
+}
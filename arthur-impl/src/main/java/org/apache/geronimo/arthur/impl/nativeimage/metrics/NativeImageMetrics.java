@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * Metrics extracted from a native-image execution.
+ */
+@Data
+public class NativeImageMetrics {
+    private String main;
+    private String output;
+
+    /**
+     * Duration in milliseconds of each phase (classlist, setup, typeflow, analysis, compile, image, write, total...).
+     */
+    private Map<String, Double> phasesDurations = new LinkedHashMap<>();
+
+    /**
+     * Memory in GB reported at the end of each phase (when native-image reports it).
+     */
+    private Map<String, Double> phasesMemory = new LinkedHashMap<>();
+
+    /**
+     * Peak memory in GB (max of the phases memory or the peak RSS when reported).
+     */
+    private Double peakMemory;
+
+    private Long reachableClasses;
+    private Long reachableMethods;
+
+    /**
+     * Size in bytes of the produced binary.
+     */
+    private Long imageSize;
+
+    /**
+     * Which attempt succeeded (1 if no out of memory retry was needed).
+     */
+    private int attempt = 1;
+
+    private String maxHeap;
+    private Integer numberOfThreads;
+
+    /**
+     * Time spent waiting (milliseconds) for other native-image processes to complete (see ProcessGovernor).
+     */
+    private long waitTime;
+}
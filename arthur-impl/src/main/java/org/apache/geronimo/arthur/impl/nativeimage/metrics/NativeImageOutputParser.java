@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import static java.util.Locale.ROOT;
+
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * Extracts the metrics of a native-image execution from its output.
+ * It supports the historical phase format ({@code [output:pid]    classlist:   6,427.14 ms,  0.96 GB})
+ * and the staged one of recent versions ({@code [1/7] Initializing...   (5.1s @ 0.24GB)}).
+ */
+public class NativeImageOutputParser implements Consumer<String> {
+    private static final Pattern PHASE = Pattern.compile(
+            "^[^\\]]*\\]\\s+([\\[(]?[\\w -]+?[\\])]?):\\s+([\\d.,]+)\\s+ms(?:,\\s+([\\d.,]+)\\s+GB)?\\s*$");
+    private static final Pattern STAGE = Pattern.compile(
+            "^\\[\\d+/\\d+\\]\\s+([^.\\[]+?)\\.\\.\\..*\\((?:(\\d+)m\\s*)?([\\d.,]+)s\\s+@\\s+([\\d.,]+)GB\\)\\s*$");
+    private static final Pattern FINISHED = Pattern.compile(
+            "^Finished generating .* in (?:(\\d+)m\\s*)?([\\d.,]+)s\\.?\\s*$");
+    private static final Pattern REACHABLE = Pattern.compile(
+            "([\\d.,]+)\\s+(?:\\([\\d.,]+%\\)\\s+of\\s+[\\d.,]+\\s+)?(types|classes|methods)\\s+reachable");
+    private static final Pattern PEAK_RSS = Pattern.compile("Peak RSS:\\s+([\\d.,]+)\\s*GB");
+
+    @Getter
+    private final NativeImageMetrics metrics = new NativeImageMetrics();
+
+    @Override
+    public void accept(final String line) {
+        if (line == null || line.isEmpty()) {
+            return;
+        }
+        final String trimmed = line.trim();
+
+        final Matcher phase = PHASE.matcher(trimmed);
+        if (phase.matches()) {
+            final String name = phase.group(1).replaceAll("[\\[\\]()]", "").trim();
+            onPhase(name, toNumber(phase.group(2)), phase.group(3) == null ? null : toNumber(phase.group(3)));
+            return;
+        }
+
+        final Matcher stage = STAGE.matcher(trimmed);
+        if (stage.matches()) {
+            final double minutes = stage.group(2) == null ? 0 : Double.parseDouble(stage.group(2));
+            onPhase(
+                    stage.group(1).trim().toLowerCase(ROOT).replace(' ', '-'),
+                    (minutes * 60 + toNumber(stage.group(3))) * 1000,
+                    toNumber(stage.group(4)));
+            return;
+        }
+
+        final Matcher finished = FINISHED.matcher(trimmed);
+        if (finished.matches()) {
+            final double minutes = finished.group(1) == null ? 0 : Double.parseDouble(finished.group(1));
+            metrics.getPhasesDurations().putIfAbsent("total", (minutes * 60 + toNumber(finished.group(2))) * 1000);
+            return;
+        }
+
+        final Matcher reachable = REACHABLE.matcher(trimmed);
+        if (reachable.find()) {
+            final long count = (long) toNumber(reachable.group(1));
+            if ("methods".equals(reachable.group(2))) {
+                metrics.setReachableMethods(count);
+            } else {
+                metrics.setReachableClasses(count);
+            }
+            return;
+        }
+
+        final Matcher peakRss = PEAK_RSS.matcher(trimmed);
+        if (peakRss.find()) {
+            updatePeakMemory(toNumber(peakRss.group(1)));
+        }
+    }
+
+    private void onPhase(final String name, final double duration, final Double memory) {
+        metrics.getPhasesDurations().put(name, duration);
+        if (memory != null) {
+            metrics.getPhasesMemory().put(name, memory);
+            updatePeakMemory(memory);
+        }
+    }
+
+    private void updatePeakMemory(final double memory) {
+        if (metrics.getPeakMemory() == null || metrics.getPeakMemory() < memory) {
+            metrics.setPeakMemory(memory);
+        }
+    }
+
+    // native-image uses the default locale so we can get "6,427.14" as well as "6.427,14"
+    static double toNumber(final String raw) {
+        final int lastSeparator = Math.max(raw.lastIndexOf('.'), raw.lastIndexOf(','));
+        if (lastSeparator < 0) {
+            return Double.parseDouble(raw);
+        }
+        final int decimals = raw.length() - lastSeparator - 1;
+        if (decimals > 0 && decimals < 3) {
+            return Double.parseDouble(
+                    raw.substring(0, lastSeparator).replaceAll("[^\\d]", "") + '.' + raw.substring(lastSeparator + 1));
+        }
+        return Double.parseDouble(raw.replaceAll("[^\\d]", ""));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.pgo;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PgoConfiguration {
+    /**
+     * Command exercising the instrumented binary, `${binary}` is replaced by its path.
+     * If empty the instrumented binary is launched without argument.
+     * It is executed in the directory where the profile is collected.
+     */
+    private List<String> workload = new ArrayList<>();
+
+    /**
+     * Seconds after which the workload is stopped (SIGTERM then SIGKILL), it is not considered as a failure
+     * since services generally run until they are stopped.
+     */
+    private long timeout = 300;
+
+    /**
+     * Where instrumented binaries and profiles are cached, a subdirectory is used per inputs fingerprint.
+     */
+    private Path cache;
+
+    /**
+     * Should the workload output be forwarded to current process output.
+     */
+    private boolean inheritIO = true;
+}
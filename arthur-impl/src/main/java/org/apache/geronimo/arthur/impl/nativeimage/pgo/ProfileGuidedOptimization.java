@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.pgo;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+import org.apache.geronimo.arthur.impl.nativeimage.graal.CommandGenerator;
+import org.apache.geronimo.arthur.impl.nativeimage.graal.Fingerprint;
+import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessExecutor;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Profile guided optimization pipeline: build an instrumented binary, run a workload against it to collect a profile
+ * and build the final binary with this profile.
+ * The instrumented binary and the profile are cached by a fingerprint of the build inputs.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ProfileGuidedOptimization {
+    public static final String PROFILE = "default.iprof";
+
+    private final PgoConfiguration configuration;
+    private final Consumer<ArthurNativeImageConfiguration> builder;
+
+    public void run(final ArthurNativeImageConfiguration nativeImageConfiguration) {
+        final Path output = Paths.get(new CommandGenerator().generate(nativeImageConfiguration).stream()
+                .reduce((a, b) -> b) // output is the last command part
+                .orElseThrow(IllegalStateException::new));
+        final Path cache = configuration.getCache().resolve(output.getFileName() + "-" + fingerprint(nativeImageConfiguration));
+        final Path profile = cache.resolve(PROFILE);
+        if (Files.exists(profile)) {
+            log.info("Reusing PGO profile '{}'", profile);
+        } else {
+            final Path instrumented = cache.resolve(output.getFileName() + ".instrumented");
+            if (Files.exists(instrumented)) {
+                log.info("Reusing instrumented binary '{}'", instrumented);
+            } else {
+                final ArthurNativeImageConfiguration instrumentation = nativeImageConfiguration.copy();
+                instrumentation.getCustomOptions().add("--pgo-instrument"); // copy() always creates the list
+                instrumentation.setOutput(instrumented.toAbsolutePath().toString());
+                createDirectories(cache);
+                builder.accept(instrumentation);
+            }
+            runWorkload(instrumented, cache);
+            if (!Files.exists(profile)) {
+                throw new IllegalStateException("No profile generated in '" + cache + "', " +
+                        "ensure the instrumented binary exits normally (or on SIGTERM) when the workload ends");
+            }
+        }
+
+        final ArthurNativeImageConfiguration optimized = nativeImageConfiguration.copy();
+        optimized.getCustomOptions().add("--pgo=" + profile.toAbsolutePath());
+        builder.accept(optimized);
+    }
+
+    private void runWorkload(final Path instrumented, final Path workingDirectory) {
+        final String binary = instrumented.toAbsolutePath().toString();
+        final List<String> command = configuration.getWorkload() == null || configuration.getWorkload().isEmpty() ?
+                singletonList(binary) :
+                configuration.getWorkload().stream().map(it -> it.replace("${binary}", binary)).collect(toList());
+        log.info("Running PGO workload {} (timeout={}s)", command, configuration.getTimeout());
+
+        final ProcessBuilder processBuilder = new ProcessBuilder(command).directory(workingDirectory.toFile());
+        if (configuration.isInheritIO()) {
+            processBuilder.inheritIO();
+        } else {
+            processBuilder.redirectErrorStream(true).redirectOutput(workingDirectory.resolve("workload.log").toFile());
+        }
+        Process process = null;
+        try {
+            process = processBuilder.start();
+            if (!process.waitFor(configuration.getTimeout(), TimeUnit.SECONDS)) {
+                log.info("PGO workload timeout reached, stopping it");
+                process.destroy(); // let the instrumented binary dump its profile
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+                return;
+            }
+            if (process.exitValue() != 0) {
+                throw new ProcessExecutor.InvalidExitCodeException(process.exitValue());
+            }
+        } catch (final InterruptedException e) {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String fingerprint(final ArthurNativeImageConfiguration nativeImageConfiguration) {
+        final List<String> command = new CommandGenerator().generate(nativeImageConfiguration);
+        final List<Path> files = Stream.concat(
+                Stream.of(nativeImageConfiguration.getNativeImage()),
+                stream(nativeImageConfiguration.getClasspath()))
+                .map(Paths::get)
+                .collect(toList());
+        // generated on each build so only their content is meaningful
+        final List<Path> generated = Stream.of(
+                stream(nativeImageConfiguration.getReflectionConfigurationFiles()),
+                stream(nativeImageConfiguration.getResourcesConfigurationFiles()),
+                stream(nativeImageConfiguration.getDynamicProxyConfigurationFiles()))
+                .flatMap(s -> s)
+                .map(Paths::get)
+                .collect(toList());
+        final List<String> values = new ArrayList<>(command.subList(0, command.size() - 1)); // output is not an input
+        if (configuration.getWorkload() != null) {
+            values.addAll(configuration.getWorkload());
+        }
+        return Fingerprint.of(files, generated, values);
+    }
+
+    private Stream<String> stream(final Collection<String> values) {
+        return values == null ? Stream.empty() : values.stream();
+    }
+
+    private void createDirectories(final Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -16,17 +16,37 @@
  */
 package org.apache.geronimo.arthur.impl.nativeimage.process;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.List;
+import java.util.function.Consumer;
 
-import lombok.RequiredArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
 public class ProcessExecutor implements Runnable {
     private final boolean inheritIO;
     private final List<String> command;
+    private final Consumer<String> outputListener;
+
+    public ProcessExecutor(final boolean inheritIO, final List<String> command) {
+        this(inheritIO, command, null);
+    }
+
+    /**
+     * @param inheritIO should the output be forwarded to current process output.
+     * @param command the command to launch.
+     * @param outputListener if not null, it will receive each output line (stdout and stderr ones),
+     *                       the output is then forwarded to the logger (stderr lines as warnings) instead of being inherited.
+     */
+    public ProcessExecutor(final boolean inheritIO, final List<String> command, final Consumer<String> outputListener) {
+        this.inheritIO = inheritIO;
+        this.command = command;
+        this.outputListener = outputListener;
+    }
 
     @Override
     public void run() {
@@ -37,13 +57,20 @@ public class ProcessExecutor implements Runnable {
         Process process = null;
         try {
             final ProcessBuilder builder = new ProcessBuilder(command);
-            if (inheritIO) {
+            if (outputListener != null) {
+                if (inheritIO) {
+                    builder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+                }
+            } else if (inheritIO) {
                 builder.inheritIO();
             }
             process = builder.start();
+            if (outputListener != null) {
+                captureOutput(process);
+            }
             final int exitCode = process.waitFor();
             if (exitCode != 0) {
-                throw new IllegalArgumentException("Invalid exit code: " + exitCode);
+                throw new InvalidExitCodeException(exitCode);
             }
         } catch (final InterruptedException e) {
             if (process.isAlive()) {
@@ -54,4 +81,45 @@ public class ProcessExecutor implements Runnable {
             throw new IllegalStateException(e);
         }
     }
+
+    private void captureOutput(final Process process) throws IOException, InterruptedException {
+        final Thread stderr = new Thread(() -> {
+            try {
+                pump(process.getErrorStream(), log::warn);
+            } catch (final IOException e) {
+                log.debug(e.getMessage(), e);
+            }
+        }, getClass().getName() + "-stderr");
+        stderr.setDaemon(true);
+        stderr.start();
+        try {
+            pump(process.getInputStream(), log::info);
+        } finally {
+            stderr.join();
+        }
+    }
+
+    private void pump(final InputStream stream, final Consumer<String> logger) throws IOException {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (inheritIO) {
+                    logger.accept(line);
+                }
+                synchronized (outputListener) { // listeners are not expected to be thread safe
+                    outputListener.accept(line);
+                }
+            }
+        }
+    }
+
+    @Getter
+    public static class InvalidExitCodeException extends IllegalArgumentException {
+        private final int exitCode;
+
+        public InvalidExitCodeException(final int exitCode) {
+            super("Invalid exit code: " + exitCode);
+            this.exitCode = exitCode;
+        }
+    }
 }
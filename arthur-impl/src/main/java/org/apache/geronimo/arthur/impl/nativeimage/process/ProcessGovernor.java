@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.process;
+
+import static java.util.Locale.ROOT;
+
+import org.apache.geronimo.arthur.impl.nativeimage.graal.AutoSizing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits native-image processes based on the memory they will use and a maximum number of concurrent processes.
+ * It is JVM wide (see {@link #get()}) to be shared by all the modules of a parallel reactor build:
+ * the configuration generation stays parallel but the forks wait for a slot.
+ *
+ * Note that a process is always admitted when none is running to ensure a single build can't be blocked.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ProcessGovernor {
+    private static volatile ProcessGovernor instance;
+
+    @Getter
+    private final long memoryBudget;
+
+    private int running;
+    private long reservedMemory;
+    private int waiting;
+
+    public static ProcessGovernor get() {
+        if (instance == null) {
+            synchronized (ProcessGovernor.class) {
+                if (instance == null) {
+                    // the current JVM (maven) memory is not available for the forks
+                    final long budget = new AutoSizing().detect().getMemory() - Runtime.getRuntime().maxMemory();
+                    instance = new ProcessGovernor(Math.max(budget, 1));
+                    log.debug("Native image processes memory budget: {}MB", instance.memoryBudget / (1024 * 1024));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxHeap the maximum heap of the process (-Xmx value), if null a JVM default (1/4 of the budget) is assumed.
+     * @param maxConcurrency the maximum number of concurrent processes, zero or negative means no limit.
+     * @return the admission, it must be closed when the process ends.
+     */
+    public Permit acquire(final String maxHeap, final int maxConcurrency) {
+        final long memory = toMemory(maxHeap);
+        final int limit = toLimit(maxConcurrency);
+        final long start = System.nanoTime();
+        synchronized (this) {
+            waiting++;
+            try {
+                while (!canAdmit(memory, limit)) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a native-image slot", e);
+                    }
+                }
+            } finally {
+                waiting--;
+            }
+            running++;
+            reservedMemory += memory;
+        }
+        return new Permit(memory, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Same as {@link #acquire(String, int)} but never waits.
+     *
+     * @return the admission or null if the process can't be admitted now.
+     */
+    public synchronized Permit tryAcquire(final String maxHeap, final int maxConcurrency) {
+        final long memory = toMemory(maxHeap);
+        if (!canAdmit(memory, toLimit(maxConcurrency))) {
+            return null;
+        }
+        running++;
+        reservedMemory += memory;
+        return new Permit(memory, 0);
+    }
+
+    /**
+     * @return the number of threads currently blocked in {@link #acquire(String, int)}.
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    private boolean canAdmit(final long memory, final int limit) {
+        return running == 0 || (running < limit && reservedMemory + memory <= memoryBudget);
+    }
+
+    private long toMemory(final String maxHeap) {
+        return maxHeap == null ? memoryBudget / 4 : toBytes(maxHeap);
+    }
+
+    private int toLimit(final int maxConcurrency) {
+        return maxConcurrency <= 0 ? Integer.MAX_VALUE : maxConcurrency;
+    }
+
+    private synchronized void release(final long memory) {
+        running--;
+        reservedMemory -= memory;
+        notifyAll();
+    }
+
+    static long toBytes(final String value) {
+        final String normalized = value.trim().toLowerCase(ROOT);
+        final char unit = normalized.charAt(normalized.length() - 1);
+        final String number = Character.isDigit(unit) ? normalized : normalized.substring(0, normalized.length() - 1);
+        final long base = Long.parseLong(number);
+        switch (unit) {
+            case 'k':
+                return base * 1024;
+            case 'm':
+                return base * 1024 * 1024;
+            case 'g':
+                return base * 1024 * 1024 * 1024;
+            case 't':
+                return base * 1024 * 1024 * 1024 * 1024;
+            default:
+                return base;
+        }
+    }
+
+    @RequiredArgsConstructor
+    public class Permit implements AutoCloseable {
+        private final long memory;
+
+        /**
+         * Time spent waiting for this admission in milliseconds.
+         */
+        @Getter
+        private final long waitTime;
+
+        private boolean closed;
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(memory);
+            }
+        }
+    }
+}
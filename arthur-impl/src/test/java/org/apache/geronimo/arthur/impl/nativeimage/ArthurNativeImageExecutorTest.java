@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.NativeImageMetrics;
+import org.apache.geronimo.arthur.impl.nativeimage.process.ProcessExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArthurNativeImageExecutorTest {
+    @TempDir
+    Path workdir;
+
+    private ArthurNativeImageConfiguration configuration;
+
+    @BeforeEach
+    void createFakeNativeImage() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        // fails with an OOM until it gets 2g of heap
+        final Path nativeImage = workdir.resolve("native-image");
+        Files.write(nativeImage, ("#! /bin/sh\n" +
+                "case \"$*\" in\n" +
+                "  *-J-Xmx2g*) echo '[main:1]      [total]:   1,234.56 ms,  1.50 GB' ;;\n" +
+                "  *) echo 'Exception in thread \"main\" java.lang.OutOfMemoryError: Java heap space'; exit 1 ;;\n" +
+                "esac\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(nativeImage.toFile().setExecutable(true));
+
+        configuration = new ArthurNativeImageConfiguration();
+        configuration.setNativeImage(nativeImage.toAbsolutePath().toString());
+        configuration.setInheritIO(false);
+        configuration.setMaxHeap("1g");
+        configuration.setMain("test.Main");
+        configuration.setOutput(workdir.resolve("main.bin").toString());
+    }
+
+    @Test
+    void retryOnOutOfMemory() {
+        configuration.setOutOfMemoryRetries(asList("1500m", "2g:2"));
+
+        final AtomicReference<NativeImageMetrics> metrics = new AtomicReference<>();
+        newExecutor(metrics).run();
+
+        assertNotNull(metrics.get());
+        assertEquals(3, metrics.get().getAttempt());
+        assertEquals("2g", metrics.get().getMaxHeap());
+        assertEquals(2, metrics.get().getNumberOfThreads());
+        assertEquals(1234.56, metrics.get().getPhasesDurations().get("total"));
+    }
+
+    @Test
+    void failWhenLadderIsExhausted() {
+        configuration.setOutOfMemoryRetries(asList("1500m"));
+        assertThrows(ProcessExecutor.InvalidExitCodeException.class, () -> newExecutor(new AtomicReference<>()).run());
+    }
+
+    @Test
+    void argFile() throws IOException {
+        configuration.setMaxHeap("2g");
+        configuration.setArgFile(ArthurNativeImageConfiguration.ArgFileMode.always);
+        newExecutor(new AtomicReference<>()).run();
+
+        final Path argFile = workdir.resolve("generated_configuration/main.bin.args");
+        assertTrue(Files.exists(argFile));
+        assertTrue(Files.readAllLines(argFile).contains("test.Main"));
+    }
+
+    @Test
+    void lateNativeImageResolution() {
+        configuration.setMaxHeap("2g");
+        final String nativeImage = configuration.getNativeImage();
+        configuration.setNativeImage(null);
+
+        final AtomicReference<NativeImageMetrics> metrics = new AtomicReference<>();
+        newExecutor(builder -> builder
+                .metricsListener(metrics::set)
+                .nativeImageResolver(() -> nativeImage))
+                .run();
+
+        assertNotNull(metrics.get());
+        assertEquals(nativeImage, configuration.getNativeImage());
+    }
+
+    @Test
+    void multipleTargets() {
+        configuration.setMaxHeap("2g");
+        configuration.setCustomOptions(new ArrayList<>(singletonList("-Dshared=true")));
+
+        final Map<String, NativeImageMetrics> metrics = new ConcurrentHashMap<>();
+        newExecutor(builder -> builder
+                .metricsListener(m -> metrics.put(m.getMain(), m))
+                .targets(asList(target("test.Main1", "-Done=true"), target("test.Main2", "-Dtwo=true"))))
+                .run();
+
+        assertEquals(2, metrics.size());
+        assertEquals(workdir.resolve("test.Main1.bin").toString(), metrics.get("test.Main1").getOutput());
+        assertEquals(workdir.resolve("test.Main2.bin").toString(), metrics.get("test.Main2").getOutput());
+        // shared configuration is not altered by the targets
+        assertEquals(singletonList("-Dshared=true"), configuration.getCustomOptions());
+        assertEquals("test.Main", configuration.getMain());
+    }
+
+    @Test
+    void multipleTargetsWithoutSharedOptions() {
+        configuration.setMaxHeap("2g");
+        configuration.setCustomOptions(null);
+
+        final Map<String, NativeImageMetrics> metrics = new ConcurrentHashMap<>();
+        newExecutor(builder -> builder
+                .metricsListener(m -> metrics.put(m.getMain(), m))
+                .targets(asList(target("test.Main1", "-Done=true"), target("test.Main2", "-Dtwo=true"))))
+                .run();
+
+        assertEquals(2, metrics.size());
+        assertNull(configuration.getCustomOptions());
+    }
+
+    private NativeImageTarget target(final String main, final String option) {
+        final NativeImageTarget target = new NativeImageTarget();
+        target.setMain(main);
+        target.setOutput(workdir.resolve(main + ".bin").toString());
+        target.getCustomOptions().add(option);
+        return target;
+    }
+
+    private ArthurNativeImageExecutor newExecutor(final AtomicReference<NativeImageMetrics> metrics) {
+        return newExecutor(builder -> builder.metricsListener(metrics::set));
+    }
+
+    private ArthurNativeImageExecutor newExecutor(
+            final Consumer<ArthurNativeImageExecutor.ExecutorConfiguration.ExecutorConfigurationBuilder> customizer) {
+        final ArthurNativeImageExecutor.ExecutorConfiguration.ExecutorConfigurationBuilder builder = ArthurNativeImageExecutor.ExecutorConfiguration.builder()
+                .configuration(configuration)
+                .workingDirectory(workdir.resolve("generated_configuration"))
+                .annotatedClassFinder(a -> emptyList())
+                .annotatedMethodFinder(a -> emptyList())
+                .implementationFinder(a -> emptyList())
+                .extensionProperties(emptyMap());
+        customizer.accept(builder);
+        return new ArthurNativeImageExecutor(builder.build());
+    }
+}
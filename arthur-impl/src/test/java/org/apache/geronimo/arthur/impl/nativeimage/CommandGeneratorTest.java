@@ -19,12 +19,19 @@ package org.apache.geronimo.arthur.impl.nativeimage;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Stream;
 
 import org.apache.geronimo.arthur.impl.nativeimage.graal.CommandGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -39,6 +46,42 @@ class CommandGeneratorTest {
                 new CommandGenerator().generate(useCase.configuration));
     }
 
+    @Test
+    void argFile(@TempDir final Path workdir) throws IOException {
+        final ArthurNativeImageConfiguration configuration = new ArthurNativeImageConfiguration();
+        configuration.setMaxHeap("2g");
+        configuration.setClasspath(asList("/repo/foo.jar", "/my repo/bar.jar"));
+        configuration.setMain("mysoft");
+        configuration.setOutput("output.bin");
+
+        final CommandGenerator generator = new CommandGenerator();
+        final Path argFile = workdir.resolve("output.bin.args");
+        final List<String> command = generator.toArgFileCommand(generator.generate(configuration), argFile);
+        assertEquals(asList("native-image", "-J-Xmx2g", "@" + argFile.toAbsolutePath()), command);
+
+        final List<String> lines = Files.readAllLines(argFile);
+        assertEquals("-classpath", lines.get(0));
+        assertEquals('"' + "/repo/foo.jar" + File.pathSeparator + "/my repo/bar.jar" + '"', lines.get(1));
+        assertEquals(asList("mysoft", "output.bin"), lines.subList(lines.size() - 2, lines.size()));
+    }
+
+    @Test
+    void supportsArgFile(@TempDir final Path workdir) throws IOException {
+        final Path nativeImage = Files.createDirectories(workdir.resolve("bin")).resolve("native-image");
+        Files.write(nativeImage, new byte[0]);
+        final CommandGenerator generator = new CommandGenerator();
+        assertFalse(generator.supportsArgFile(nativeImage.toAbsolutePath().toString())); // no release file
+        assertFalse(generator.supportsArgFile("native-image")); // PATH
+
+        final Path release = workdir.resolve("release");
+        Files.write(release, singletonList("GRAALVM_VERSION=19.2.1"));
+        assertFalse(generator.supportsArgFile(nativeImage.toAbsolutePath().toString()));
+        Files.write(release, singletonList("GRAALVM_VERSION=\"21.1.0\""));
+        assertTrue(generator.supportsArgFile(nativeImage.toAbsolutePath().toString()));
+        Files.write(release, singletonList("JAVA_VERSION=\"17.0.8\""));
+        assertTrue(generator.supportsArgFile(nativeImage.toAbsolutePath().toString()));
+    }
+
     static Stream<Case> configurations() {
         final ArthurNativeImageConfiguration emptyConfig = new ArthurNativeImageConfiguration();
 
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class ExtractorTest {
+    private static final int FILES = 200;
+
+    @TempDir
+    Path workdir;
+
+    @ParameterizedTest
+    @CsvSource({"tar.gz,1", "tar.gz,4", "zip,1", "zip,4"})
+    void unpack(final String extension, final int threads) throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path archive = createArchive(extension);
+        final Path exploded = workdir.resolve("exploded");
+        new Extractor(threads).unpack(archive, exploded);
+
+        for (int i = 0; i < FILES; i++) {
+            assertEquals("content #" + i, new String(Files.readAllBytes(exploded.resolve("lib/file" + i + ".txt")), UTF_8));
+        }
+        final Path link = exploded.resolve("bin/native-image");
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(Paths.get("../lib/svm/bin/native-image"), Files.readSymbolicLink(link));
+        assertEquals("binary", new String(Files.readAllBytes(link), UTF_8));
+        assertTrue(Files.isExecutable(exploded.resolve("lib/svm/bin/native-image")));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"tar.gz", "zip"})
+    void selectiveThenLazyExtraction(final String extension) throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path archive = createArchive(extension);
+        final Path exploded = workdir.resolve("exploded");
+        new Extractor(2, new ExtractionFilter(asList("bin/**", "lib/svm/**"), singletonList("**/file1*.txt"))).unpack(archive, exploded);
+        assertTrue(Files.exists(exploded.resolve("lib/svm/bin/native-image")));
+        assertTrue(Files.isSymbolicLink(exploded.resolve("bin/native-image")));
+        assertFalse(Files.exists(exploded.resolve("lib/file0.txt")));
+
+        // on demand
+        new Extractor(2).unpack(archive, exploded, new ExtractionFilter(singletonList("lib/file1?.txt"), emptyList()));
+        assertTrue(Files.exists(exploded.resolve("lib/file10.txt")));
+        assertFalse(Files.exists(exploded.resolve("lib/file1.txt")));
+        assertFalse(Files.exists(exploded.resolve("lib/file100.txt")));
+    }
+
+    @Test
+    void filter() {
+        final ExtractionFilter filter = ExtractionFilter.defaults();
+        assertTrue(filter.isSelective());
+        assertTrue(filter.test("release"));
+        assertTrue(filter.test("jre/lib/"));
+        assertTrue(filter.test("jre/lib/security/cacerts"));
+        assertTrue(filter.test("jre/lib/amd64/libsunec.so"));
+        assertTrue(filter.test("lib/svm/bin/native-image"));
+        assertFalse(filter.test("src.zip"));
+        assertFalse(filter.test("jre/lib/src.zip"));
+        assertFalse(filter.test("lib/visualvm/bin/visualvm"));
+        assertFalse(filter.test("sample/README"));
+        assertFalse(filter.test("jre/languages/js/graaljs.jar"));
+        assertFalse(ExtractionFilter.ALL.isSelective());
+        assertTrue(ExtractionFilter.ALL.test("sample/README"));
+    }
+
+    private Path createArchive(final String extension) throws IOException {
+        final Path archive = workdir.resolve("graal." + extension);
+        try (final OutputStream output = Files.newOutputStream(archive)) {
+            if ("zip".equals(extension)) {
+                try (final ZipArchiveOutputStream zip = new ZipArchiveOutputStream(output)) {
+                    writeEntries(zip, true);
+                }
+            } else {
+                try (final TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(output))) {
+                    writeEntries(tar, false);
+                }
+            }
+        }
+        return archive;
+    }
+
+    private void writeEntries(final ArchiveOutputStream archive, final boolean zip) throws IOException {
+        directory(archive, zip, "graalvm/");
+        directory(archive, zip, "graalvm/bin/");
+        // link before its target to test retries
+        if (zip) {
+            final ZipArchiveEntry entry = new ZipArchiveEntry("graalvm/bin/native-image");
+            entry.setUnixMode(0120777);
+            final byte[] target = "../lib/svm/bin/native-image".getBytes(UTF_8);
+            entry.setSize(target.length);
+            archive.putArchiveEntry(entry);
+            archive.write(target);
+        } else {
+            final TarArchiveEntry entry = new TarArchiveEntry("graalvm/bin/native-image", TarArchiveEntry.LF_SYMLINK);
+            entry.setLinkName("../lib/svm/bin/native-image");
+            archive.putArchiveEntry(entry);
+        }
+        archive.closeArchiveEntry();
+        directory(archive, zip, "graalvm/lib/");
+        for (int i = 0; i < FILES; i++) {
+            file(archive, zip, "graalvm/lib/file" + i + ".txt", "content #" + i);
+        }
+        directory(archive, zip, "graalvm/lib/svm/");
+        directory(archive, zip, "graalvm/lib/svm/bin/");
+        file(archive, zip, "graalvm/lib/svm/bin/native-image", "binary");
+    }
+
+    private void directory(final ArchiveOutputStream archive, final boolean zip, final String name) throws IOException {
+        archive.putArchiveEntry(zip ? new ZipArchiveEntry(name) : new TarArchiveEntry(name));
+        archive.closeArchiveEntry();
+    }
+
+    private void file(final ArchiveOutputStream archive, final boolean zip, final String name, final String content) throws IOException {
+        final byte[] bytes = content.getBytes(UTF_8);
+        final ArchiveEntry entry;
+        if (zip) {
+            final ZipArchiveEntry zipEntry = new ZipArchiveEntry(name);
+            zipEntry.setSize(bytes.length);
+            entry = zipEntry;
+        } else {
+            final TarArchiveEntry tarEntry = new TarArchiveEntry(name);
+            tarEntry.setSize(bytes.length);
+            entry = tarEntry;
+        }
+        archive.putArchiveEntry(entry);
+        archive.write(bytes);
+        archive.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.benchmark;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbConfig;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BenchmarkTest {
+    @BeforeEach
+    void unixOnly() {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+    }
+
+    @Test
+    void runToExit() {
+        final BenchmarkResult result = newBenchmark(null).run("exit", asList("/bin/sh", "-c", "exit 0"));
+        assertEquals(3, result.getRuns().size());
+        assertNotNull(result.getWallClock());
+    }
+
+    @Test
+    void runToMarker() {
+        final BenchmarkResult result = newBenchmark("ready").run("marker", asList("/bin/sh", "-c", "echo ready; sleep 30"));
+        assertEquals(3, result.getRuns().size());
+        assertTrue(result.getRuns().stream().allMatch(BenchmarkResult.Run::isMarkerFound));
+        assertTrue(result.getWallClock() < 30_000);
+        if (Files.exists(Paths.get("/proc/self/status"))) {
+            assertNotNull(result.getPeakRss());
+            assertNotNull(result.getCpuTime());
+        }
+    }
+
+    @Test
+    void tooShortToBeMeasured() {
+        final BenchmarkResult result = newBenchmark(null, 1_000).run("exit", asList("/bin/sh", "-c", "exit 0"));
+        assertTrue(result.getRuns().stream().noneMatch(BenchmarkResult.Run::isMeasured));
+        assertNull(result.getPeakRss());
+        assertNull(result.getCpuTime());
+    }
+
+    @Test
+    void measuredUntilExit() {
+        assumeTrue(Files.exists(Paths.get("/proc/self/status")));
+        final BenchmarkResult result = newBenchmark(null, 5).run("exit", asList("/bin/sh", "-c", "sleep 0.2"));
+        assertTrue(result.getRuns().stream().allMatch(BenchmarkResult.Run::isMeasured));
+        assertNotNull(result.getPeakRss());
+        assertNotNull(result.getCpuTime());
+    }
+
+    @Test
+    void failure() {
+        assertThrows(IllegalStateException.class, () -> newBenchmark(null).run("fail", asList("/bin/sh", "-c", "exit 3")));
+        assertThrows(IllegalStateException.class, () -> newBenchmark("ready").run("no-marker", asList("/bin/sh", "-c", "echo other")));
+    }
+
+    @Test
+    void reportRoundTrip() throws Exception {
+        final BenchmarkResult result = new BenchmarkResult();
+        result.setName("native");
+        final BenchmarkResult.Run run = new BenchmarkResult.Run();
+        run.setWallClock(12.5);
+        run.setPeakRss(2048L);
+        run.setMeasured(true);
+        result.getRuns().add(run);
+
+        final Type type = new HashMap<String, BenchmarkResult>() {
+        }.getClass().getGenericSuperclass();
+        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.cdi.activated", false))) {
+            final Map<String, BenchmarkResult> read = jsonb.fromJson(jsonb.toJson(singletonMap("native", result)), type);
+            assertEquals(12.5, read.get("native").getWallClock());
+            assertEquals(2048., read.get("native").getPeakRss());
+            assertNull(read.get("native").getCpuTime());
+        }
+    }
+
+    @Test
+    void parseCpuTime() {
+        assertEquals(250., Benchmark.parseCpuTime(
+                "1234 (my (weird) bin) S 1 1234 1234 0 -1 4194304 100 0 0 0 20 5 0 0 20 0 1 0 100 1000 10 18446744073709551615"));
+    }
+
+    private Benchmark newBenchmark(final String marker) {
+        return newBenchmark(marker, 5);
+    }
+
+    private Benchmark newBenchmark(final String marker, final long samplingInterval) {
+        return new Benchmark(Benchmark.BenchmarkConfiguration.builder()
+                .iterations(3)
+                .warmup(1)
+                .marker(marker)
+                .timeout(60)
+                .samplingInterval(samplingInterval)
+                .build());
+    }
+}
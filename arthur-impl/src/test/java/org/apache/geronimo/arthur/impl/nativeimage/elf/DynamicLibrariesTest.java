@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.elf;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DynamicLibrariesTest {
+    @TempDir
+    Path workdir;
+
+    @Test
+    void read() throws IOException {
+        final Path binary = elf(workdir.resolve("app"), 62, "/lib64/ld-linux-x86-64.so.2", "$ORIGIN/lib", "libz.so.1", "libc.so.6");
+        assertTrue(ElfReader.isElf(binary));
+        final ElfFile elf = ElfReader.read(binary);
+        assertTrue(elf.isElf64());
+        assertEquals(62, elf.getMachine());
+        assertEquals("/lib64/ld-linux-x86-64.so.2", elf.getInterpreter());
+        assertEquals(asList("libz.so.1", "libc.so.6"), elf.getNeeded());
+        assertEquals(singletonList("$ORIGIN/lib"), elf.getRunPaths());
+
+        final ElfFile library = ElfReader.read(elf(workdir.resolve("libc.so.6"), 62, null, null));
+        assertNull(library.getInterpreter());
+        assertEquals(emptyList(), library.getNeeded());
+
+        final Path text = Files.write(workdir.resolve("text"), "not an elf".getBytes(StandardCharsets.UTF_8));
+        assertFalse(ElfReader.isElf(text));
+        assertThrows(IllegalArgumentException.class, () -> ElfReader.read(text));
+    }
+
+    @Test
+    void resolveTransitively() throws IOException {
+        final Path system = Files.createDirectories(workdir.resolve("system"));
+        final Path system32 = Files.createDirectories(workdir.resolve("system32"));
+        final Path app = Files.createDirectories(workdir.resolve("app"));
+        final Path binary = elf(app.resolve("app"), 62, null, "$ORIGIN/lib", "libapp.so", "libc.so.6");
+        final Path libApp = elf(Files.createDirectories(app.resolve("lib")).resolve("libapp.so"), 62, null, null, "libz.so.1", "libc.so.6");
+        elf(system32.resolve("libz.so.1"), 3, null, null); // other architecture, ignored
+        final Path libZ = elf(system.resolve("libz.so.1"), 62, null, null, "libc.so.6");
+        final Path libC = elf(system.resolve("libc.so.6"), 62, null, null, "libmissing.so");
+
+        final DynamicLibraries.Resolution resolution = new DynamicLibraries(asList(system32, system)).resolve(binary);
+        final Map<String, Path> expected = new LinkedHashMap<>();
+        expected.put("libapp.so", libApp);
+        expected.put("libc.so.6", libC);
+        expected.put("libz.so.1", libZ);
+        assertEquals(expected, resolution.getLibraries());
+        assertEquals(singletonList("libmissing.so"), resolution.getMissing());
+        assertNull(resolution.getInterpreter());
+    }
+
+    // minimal 64 bits little endian ELF: program headers (interpreter, one load segment, dynamic section)
+    private static Path elf(final Path target, final int machine, final String interpreter, final String runpath,
+                            final String... needed) throws IOException {
+        final long base = 0x400000;
+        final int phnum = interpreter != null ? 3 : 2;
+        final int interpOffset = 64 + phnum * 56;
+        final byte[] interp = interpreter != null ? (interpreter + '\0').getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        final ByteBuffer strings = ByteBuffer.allocate(1024);
+        strings.put((byte) 0);
+        final List<long[]> dynamic = new ArrayList<>(); // tag, value
+        for (final String name : needed) {
+            dynamic.add(new long[]{1, strings.position()});
+            strings.put((name + '\0').getBytes(StandardCharsets.UTF_8));
+        }
+        if (runpath != null) {
+            dynamic.add(new long[]{29, strings.position()});
+            strings.put((runpath + '\0').getBytes(StandardCharsets.UTF_8));
+        }
+        final int strtabOffset = interpOffset + interp.length;
+        final int strsz = strings.position();
+        dynamic.add(new long[]{5, base + strtabOffset});
+        dynamic.add(new long[]{10, strsz});
+        dynamic.add(new long[]{0, 0});
+        final int dynamicOffset = strtabOffset + strsz;
+        final int size = dynamicOffset + dynamic.size() * 16;
+
+        final ByteBuffer file = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        file.put(new byte[]{0x7f, 'E', 'L', 'F', 2, 1, 1});
+        file.putShort(16, (short) 3); // ET_DYN
+        file.putShort(18, (short) machine);
+        file.putLong(32, 64);
+        file.putShort(54, (short) 56);
+        file.putShort(56, (short) phnum);
+
+        int ph = 64;
+        if (interpreter != null) {
+            programHeader(file, ph, 3, interpOffset, base + interpOffset, interp.length);
+            ph += 56;
+        }
+        programHeader(file, ph, 1, 0, base, size);
+        programHeader(file, ph + 56, 2, dynamicOffset, base + dynamicOffset, dynamic.size() * 16);
+
+        file.position(interpOffset);
+        file.put(interp);
+        file.put(strings.array(), 0, strsz);
+        for (final long[] entry : dynamic) {
+            file.putLong(entry[0]);
+            file.putLong(entry[1]);
+        }
+        return Files.write(target, file.array());
+    }
+
+    private static void programHeader(final ByteBuffer file, final int at, final int type, final long offset,
+                                      final long vaddr, final long size) {
+        file.putInt(at, type);
+        file.putLong(at + 8, offset);
+        file.putLong(at + 16, vaddr);
+        file.putLong(at + 24, vaddr);
+        file.putLong(at + 32, size);
+        file.putLong(at + 40, size);
+    }
+}
@@ -22,7 +22,9 @@ import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +32,8 @@ import java.util.function.Predicate;
 
 import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
 import org.apache.geronimo.arthur.spi.ArthurExtension;
+import org.apache.geronimo.arthur.spi.model.ClassReflectionModel;
+import org.apache.geronimo.arthur.spi.model.ResourceModel;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -94,6 +98,32 @@ class DefautContextTest {
         assertEquals(asList(ChildAndImplClass.class, StandaloneClass.class, StandaloneInterface.class), context.findHierarchy(ChildAndImplClass.class).collect(toList()));
     }
 
+    @Test
+    void registrationOrigins() {
+        final DefautContext context = new DefautContext(new ArthurNativeImageConfiguration(), null, null, null, emptyMap());
+        context.setCurrentExtension("ext1");
+        final ClassReflectionModel model = new ClassReflectionModel();
+        model.setName("foo.Bar");
+        context.register(model);
+        context.setCurrentExtension("ext2");
+        context.register(model, "@RegisterClass on foo.Bar");
+        final ResourceModel resource = new ResourceModel();
+        resource.setPattern("META-INF/.*");
+        context.register(resource);
+
+        assertEquals(
+                asList(new RegistrationOrigin("ext1", null), new RegistrationOrigin("ext2", "@RegisterClass on foo.Bar")),
+                new ArrayList<>(context.getRegistrationOrigins().get("reflection:foo.Bar")));
+        assertEquals(
+                singletonList(new RegistrationOrigin("ext2", null)),
+                new ArrayList<>(context.getRegistrationOrigins().get("resource:META-INF/.*")));
+
+        final RegistrationOrigins origins = new RegistrationOrigins(context.getRegistrationOrigins());
+        assertEquals(singletonList("reflection:foo.Bar"), new ArrayList<>(origins.why("foo.Bar$Nested").keySet()));
+        assertEquals(singletonList("resource:META-INF/.*"), new ArrayList<>(origins.why("META-INF/beans.xml").keySet()));
+        assertTrue(origins.why("foo.Other").isEmpty());
+    }
+
     public static class StandaloneClass {
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.graal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AutoSizingTest {
+    @TempDir
+    Path cgroup;
+
+    @Test
+    void cgroupV2() throws IOException {
+        write("memory.max", "1073741824\n");
+        write("cpu.max", "100000 100000\n");
+
+        final ArthurNativeImageConfiguration configuration = new ArthurNativeImageConfiguration();
+        new AutoSizing(cgroup, 256 * 1024 * 1024).apply(configuration); // 256m used by maven
+        assertEquals("576m", configuration.getMaxHeap());
+        assertEquals(1, configuration.getActiveProcessorCount());
+        assertEquals(1, configuration.getNumberOfThreads());
+    }
+
+    @Test
+    void cgroupV1() throws IOException {
+        write("memory/memory.limit_in_bytes", "2147483648");
+        write("cpu/cpu.cfs_quota_us", "50000");
+        write("cpu/cpu.cfs_period_us", "100000");
+
+        final AutoSizing.Resources resources = new AutoSizing(cgroup).detect();
+        assertEquals(2147483648L, resources.getMemory());
+        assertEquals("cgroup limit", resources.getMemorySource());
+        assertEquals(1, resources.getCpus());
+    }
+
+    @Test
+    void unlimited() throws IOException {
+        write("memory.max", "max");
+        write("cpu.max", "max 100000");
+
+        final AutoSizing.Resources resources = new AutoSizing(cgroup).detect();
+        assertEquals("physical memory", resources.getMemorySource());
+        assertTrue(resources.getMemory() > 0);
+        assertEquals(Runtime.getRuntime().availableProcessors(), resources.getCpus());
+    }
+
+    @Test
+    void currentJvmUsesMostOfTheMemory() throws IOException {
+        write("memory.max", "1073741824");
+
+        final ArthurNativeImageConfiguration configuration = new ArthurNativeImageConfiguration();
+        new AutoSizing(cgroup, 1024 * 1024 * 1024).apply(configuration);
+        assertEquals("256m", configuration.getMaxHeap());
+    }
+
+    @Test
+    void explicitValuesWin() throws IOException {
+        write("memory.max", "1073741824");
+
+        final ArthurNativeImageConfiguration configuration = new ArthurNativeImageConfiguration();
+        configuration.setMaxHeap("4g");
+        configuration.setNumberOfThreads(3);
+        new AutoSizing(cgroup).apply(configuration);
+        assertEquals("4g", configuration.getMaxHeap());
+        assertEquals(3, configuration.getNumberOfThreads());
+    }
+
+    private void write(final String relative, final String content) throws IOException {
+        final Path file = cgroup.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
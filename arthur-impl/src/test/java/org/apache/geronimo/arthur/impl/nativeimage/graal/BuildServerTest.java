@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.graal;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildServerTest {
+    @TempDir
+    Path workdir;
+
+    @Test
+    void fingerprint() throws IOException {
+        final Path jar = workdir.resolve("app.jar");
+        Files.write(jar, "v1".getBytes(StandardCharsets.UTF_8));
+        final String nativeImage = workdir.resolve("native-image").toString();
+        final String first = BuildServer.fingerprint(nativeImage, singletonList(jar.toString()));
+        assertEquals(first, BuildServer.fingerprint(nativeImage, singletonList(jar.toString())));
+
+        Files.write(jar, "v2-longer".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(first, BuildServer.fingerprint(nativeImage, singletonList(jar.toString())));
+    }
+
+    @Test
+    void fingerprintResolvesPathAndRelease() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path home = Files.createDirectories(workdir.resolve("graalvm/bin")).getParent();
+        final Path release = home.resolve("release");
+        Files.write(release, "JAVA_VERSION=\"1.8.0_232\"\nGRAALVM_VERSION=19.3.0".getBytes(StandardCharsets.UTF_8));
+        Files.write(home.resolve("bin/native-image"), "#! /bin/sh".getBytes(StandardCharsets.UTF_8));
+        final Path path = Files.createDirectories(workdir.resolve("path"));
+        Files.createSymbolicLink(path.resolve("native-image"), home.resolve("bin/native-image"));
+
+        assertEquals(home.resolve("bin/native-image").toRealPath(), BuildServer.resolveExecutable("native-image", path.toString()));
+
+        final String first = BuildServer.fingerprint("native-image", emptyList(), path.toString());
+        assertEquals(first, BuildServer.fingerprint("native-image", emptyList(), path.toString()));
+
+        // same launcher path and size but another GraalVM
+        Files.write(release, "JAVA_VERSION=\"1.8.0_242\"\nGRAALVM_VERSION=20.0.0".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(first, BuildServer.fingerprint("native-image", emptyList(), path.toString()));
+    }
+
+    @Test
+    void restartOnChange() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path log = workdir.resolve("calls.log");
+        final Path nativeImage = workdir.resolve("native-image");
+        Files.write(nativeImage, ("#! /bin/sh\necho \"$*\" >> '" + log + "'\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(nativeImage.toFile().setExecutable(true));
+        final Path classes = Files.createDirectories(workdir.resolve("classes"));
+        final Path clazz = classes.resolve("Main.class");
+        Files.write(clazz, new byte[]{1});
+
+        final BuildServer server = new BuildServer(workdir.resolve("state/" + BuildServer.STATE));
+
+        final ArthurNativeImageConfiguration first = newConfiguration(nativeImage, classes);
+        server.prepare(first);
+        assertFalse(first.isNoServer());
+        final String session = first.getCustomOptions().iterator().next();
+        assertTrue(session.startsWith("--server-session=arthur-"), session);
+        assertFalse(Files.exists(log));
+
+        // same classpath: reused
+        final ArthurNativeImageConfiguration same = newConfiguration(nativeImage, classes);
+        server.prepare(same);
+        assertEquals(session, same.getCustomOptions().iterator().next());
+        assertFalse(Files.exists(log));
+
+        // changed classpath: previous server stopped
+        Files.write(clazz, new byte[]{1, 2});
+        Files.setLastModifiedTime(clazz, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        final ArthurNativeImageConfiguration changed = newConfiguration(nativeImage, classes);
+        server.prepare(changed);
+        assertNotEquals(session, changed.getCustomOptions().iterator().next());
+        final List<String> calls = Files.readAllLines(log);
+        assertEquals(singletonList(session + " --server-shutdown"), calls);
+
+        assertTrue(server.stop());
+        assertEquals(2, Files.readAllLines(log).size());
+        assertFalse(server.stop());
+    }
+
+    @Test
+    void withoutCustomOptions() throws IOException {
+        final Path classes = Files.createDirectories(workdir.resolve("classes"));
+        final ArthurNativeImageConfiguration configuration = newConfiguration(workdir.resolve("native-image"), classes);
+        configuration.setCustomOptions(null);
+
+        new BuildServer(workdir.resolve(BuildServer.STATE)).prepare(configuration);
+        assertEquals(1, configuration.getCustomOptions().size());
+        assertTrue(configuration.getCustomOptions().iterator().next().startsWith("--server-session=arthur-"));
+    }
+
+    private ArthurNativeImageConfiguration newConfiguration(final Path nativeImage, final Path classes) {
+        final ArthurNativeImageConfiguration configuration = new ArthurNativeImageConfiguration();
+        configuration.setNativeImage(nativeImage.toString());
+        configuration.setClasspath(singletonList(classes.toString()));
+        return configuration;
+    }
+}
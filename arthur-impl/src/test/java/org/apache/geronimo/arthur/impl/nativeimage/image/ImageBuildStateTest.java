@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageBuildStateTest {
+    @TempDir
+    Path workdir;
+
+    @Test
+    void roundTrip() throws IOException {
+        final Path path = workdir.resolve("state/image.properties");
+        assertNull(ImageBuildState.load(path));
+
+        new ImageBuildState("abc", "app:1", "id", "sha").store(path);
+        final ImageBuildState loaded = ImageBuildState.load(path);
+        assertEquals(new ImageBuildState("abc", "app:1", "id", "sha"), loaded);
+        assertTrue(loaded.isSameBuild("abc", "app:1"));
+        assertFalse(loaded.isSameBuild("abd", "app:1"));
+        assertFalse(loaded.isSameBuild("abc", "app:2"));
+        assertFalse(loaded.isSameBuild(null, "app:1"));
+    }
+
+    @Test
+    void incomplete() {
+        assertFalse(new ImageBuildState("abc", "app:1", null, "sha").isSameBuild("abc", "app:1"));
+        assertFalse(new ImageBuildState("abc", "app:1", "id", null).isSameBuild("abc", "app:1"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageInputsTest {
+    @TempDir
+    Path workdir;
+
+    private Path binary;
+    private Path folder;
+
+    @BeforeEach
+    void init() throws IOException {
+        binary = workdir.resolve("app");
+        Files.write(binary, new byte[]{1, 2, 3});
+        folder = Files.createDirectories(workdir.resolve("conf"));
+    }
+
+    @Test
+    void stableWhenNothingChanges() throws IOException {
+        final String first = digest("scratch");
+        Files.setLastModifiedTime(binary, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals(first, digest("scratch")); // the image uses the entry time, not the file one
+    }
+
+    @Test
+    void binaryByte() throws IOException {
+        final String first = digest("scratch");
+        Files.write(binary, new byte[]{1, 2, 4});
+        assertNotEquals(first, digest("scratch"));
+    }
+
+    @Test
+    void baseImage() {
+        assertNotEquals(digest("alpine@sha256:1"), digest("alpine@sha256:2"));
+    }
+
+    @Test
+    void entryMetadata() {
+        final String reference = digest("scratch");
+        assertNotEquals(reference, new ImageInputs().value("scratch").value("Binary")
+                .entry(folder, "/conf", "755", Instant.ofEpochMilli(1))
+                .entry(binary, "/app", "644", Instant.ofEpochMilli(1))
+                .digest());
+        assertNotEquals(reference, new ImageInputs().value("scratch").value("Binary")
+                .entry(folder, "/conf", "755", Instant.ofEpochMilli(1))
+                .entry(binary, "/app", "755", Instant.ofEpochMilli(2))
+                .digest());
+        assertNotEquals(reference, new ImageInputs().value("scratch").value("Binary")
+                .entry(folder, "/conf", "755", Instant.ofEpochMilli(1))
+                .entry(binary, "/bin/app", "755", Instant.ofEpochMilli(1))
+                .digest());
+    }
+
+    private String digest(final String base) {
+        return new ImageInputs().value(base).value("Binary")
+                .entry(folder, "/conf", "755", Instant.ofEpochMilli(1))
+                .entry(binary, "/app", "755", Instant.ofEpochMilli(1))
+                .digest();
+    }
+}
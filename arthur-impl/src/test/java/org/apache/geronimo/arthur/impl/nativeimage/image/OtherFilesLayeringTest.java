@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.image;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OtherFilesLayeringTest {
+    @TempDir
+    Path workdir;
+
+    private Path lib;
+    private Path properties;
+    private Path template;
+
+    @BeforeEach
+    void init() throws IOException {
+        lib = file("app/lib/data.bin");
+        properties = file("app/application.properties");
+        template = file("app/conf/template.txt");
+    }
+
+    @Test
+    void single() {
+        final OtherFilesLayering layering = new OtherFilesLayering("single", emptyMap(), null);
+        assertEquals(singletonList("Others"), layering.getLayers());
+        assertEquals("Others", layerOf(layering, lib));
+        assertEquals("Others", layerOf(layering, properties));
+        assertEquals("Others", layerOf(layering, template));
+    }
+
+    @Test
+    void auto() {
+        final OtherFilesLayering layering = new OtherFilesLayering("auto", emptyMap(), null);
+        assertEquals(asList("Others-stable", "Others"), layering.getLayers());
+        assertEquals("Others-stable", layerOf(layering, lib));
+        assertEquals("Others", layerOf(layering, properties));
+        assertEquals("Others", layerOf(layering, template));
+    }
+
+    @Test
+    void autoIgnoresModificationTimesByDefault() throws IOException {
+        Files.setLastModifiedTime(lib, FileTime.from(Instant.now()));
+        assertEquals("Others-stable", layerOf(new OtherFilesLayering("auto", emptyMap(), null), lib));
+    }
+
+    @Test
+    void autoWithStableAge() throws IOException {
+        final Instant stableBefore = Instant.now().minus(10, ChronoUnit.MINUTES);
+        final OtherFilesLayering layering = new OtherFilesLayering("auto", emptyMap(), stableBefore);
+        Files.setLastModifiedTime(lib, FileTime.from(stableBefore.minus(1, ChronoUnit.HOURS)));
+        assertEquals("Others-stable", layerOf(layering, lib));
+        Files.setLastModifiedTime(lib, FileTime.from(Instant.now()));
+        assertEquals("Others", layerOf(layering, lib));
+    }
+
+    @Test
+    void explicitGroups() {
+        final Map<String, List<String>> groups = new LinkedHashMap<>();
+        groups.put("Libraries", singletonList("app/lib/**"));
+        groups.put("Templates", asList("**/*.txt", "app/lib/**"));
+        final OtherFilesLayering layering = new OtherFilesLayering("ignored", groups, null);
+        assertEquals(asList("Libraries", "Templates", "Others"), layering.getLayers());
+        assertEquals("Libraries", layerOf(layering, lib)); // first matching group
+        assertEquals("Templates", layerOf(layering, template));
+        assertEquals("Others", layerOf(layering, properties));
+    }
+
+    @Test
+    void unknownMode() {
+        assertThrows(IllegalArgumentException.class, () -> new OtherFilesLayering("fast", emptyMap(), null));
+    }
+
+    private String layerOf(final OtherFilesLayering layering, final Path file) {
+        return layering.layerOf(file, workdir.relativize(file).toString().replace('\\', '/'));
+    }
+
+    private Path file(final String relative) throws IOException {
+        final Path file = workdir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{1});
+        return file;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentStoreTest {
+    @TempDir
+    Path workdir;
+
+    @Test
+    void key() {
+        assertEquals("abcd", ContentStore.key("ABCD", null));
+        assertEquals("abcd", ContentStore.key("abcd", ExtractionFilter.ALL));
+        final String selective = ContentStore.key("abcd", ExtractionFilter.defaults());
+        assertTrue(selective.startsWith("abcd-"), selective);
+        assertNotEquals(selective, ContentStore.key("abcd", new ExtractionFilter(singletonList("bin/**"), emptyList())));
+    }
+
+    @Test
+    void linkAndGc() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final ContentStore store = new ContentStore(workdir.resolve("store"));
+        final AtomicInteger extractions = new AtomicInteger();
+        final Path first = store.link("sha", workdir.resolve("ws1/graal.part"), workdir.resolve("ws1/graal"), entry -> {
+            extractions.incrementAndGet();
+            try {
+                Files.createDirectories(entry.resolve("bin"));
+                Files.write(entry.resolve("bin/gu"), "gu".getBytes(StandardCharsets.UTF_8));
+                Files.createSymbolicLink(entry.resolve("gu"), Paths.get("bin/gu"));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Files.move(first, workdir.resolve("ws1/graal"));
+        final Path second = store.link("sha", workdir.resolve("ws2/graal"), workdir.resolve("ws2/graal"), entry -> {
+            throw new IllegalStateException("already in the store");
+        });
+        assertEquals(1, extractions.get());
+
+        final Path ws1 = workdir.resolve("ws1/graal");
+        assertTrue(Files.isSameFile(ws1.resolve("bin/gu"), second.resolve("bin/gu")));
+        assertTrue(Files.isSameFile(workdir.resolve("store/sha/bin/gu"), second.resolve("bin/gu")));
+        assertTrue(Files.isSymbolicLink(second.resolve("gu")));
+        assertEquals("gu", new String(Files.readAllBytes(second.resolve("gu")), StandardCharsets.UTF_8));
+
+        // still referenced by ws2
+        delete(ws1);
+        assertEquals(emptyList(), store.gc());
+        assertTrue(Files.exists(workdir.resolve("store/sha")));
+        assertEquals(asList(second.toAbsolutePath().normalize().toString()), Files.readAllLines(workdir.resolve("store/sha.refs")));
+
+        // reinstalled with another distribution: no more referenced
+        Files.write(second.resolve(ContentStore.MARKER), "other".getBytes(StandardCharsets.UTF_8));
+        assertEquals(singletonList("sha"), store.gc());
+        assertFalse(Files.exists(workdir.resolve("store/sha")));
+        assertFalse(Files.exists(workdir.resolve("store/sha.refs")));
+        assertTrue(Files.exists(second.resolve("bin/gu"))); // hard link survives
+    }
+
+    @Test
+    void derive() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final ContentStore store = new ContentStore(workdir.resolve("store"));
+        final Path ws1 = store.link("sha", workdir.resolve("ws1/graal"), workdir.resolve("ws1/graal"), entry -> {
+            try {
+                Files.createDirectories(entry.resolve("bin"));
+                Files.write(entry.resolve("bin/gu"), "gu".getBytes(StandardCharsets.UTF_8));
+                Files.write(entry.resolve("components"), "graalvm".getBytes(StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final Path ws2 = store.link("sha", workdir.resolve("ws2/graal"), workdir.resolve("ws2/graal"), entry -> {
+            throw new IllegalStateException("already in the store");
+        });
+        Files.write(ws1.resolve(".arthur.installed"), "local".getBytes(StandardCharsets.UTF_8));
+        assertEquals("sha", store.linkedKey(ws1));
+
+        final AtomicInteger customizations = new AtomicInteger();
+        final Consumer<Path> gu = home -> { // like gu: modifies a file in place and adds new ones
+            customizations.incrementAndGet();
+            try {
+                Files.write(home.resolve("components"), ",native-image".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                Files.write(home.resolve("bin/native-image"), "ni".getBytes(StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        assertEquals("sha-native-image", store.derive("sha", "native-image", ws1, gu));
+        assertEquals("graalvm,native-image", new String(Files.readAllBytes(ws1.resolve("components")), StandardCharsets.UTF_8));
+        assertTrue(Files.exists(ws1.resolve("bin/native-image")));
+        assertEquals("local", new String(Files.readAllBytes(ws1.resolve(".arthur.installed")), StandardCharsets.UTF_8));
+        assertEquals("sha-native-image", store.linkedKey(ws1));
+
+        // other workspace and original entry untouched
+        assertEquals("graalvm", new String(Files.readAllBytes(ws2.resolve("components")), StandardCharsets.UTF_8));
+        assertEquals("graalvm", new String(Files.readAllBytes(workdir.resolve("store/sha/components")), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(ws2.resolve("bin/native-image")));
+
+        // second workspace reuses the derived entry
+        store.derive("sha", "native-image", ws2, gu);
+        assertEquals(1, customizations.get());
+        assertTrue(Files.isSameFile(ws1.resolve("components"), ws2.resolve("components")));
+
+        // original entry no more used
+        assertEquals(singletonList("sha"), store.gc());
+    }
+
+    @Test
+    void adopt() throws IOException {
+        final ContentStore store = new ContentStore(workdir.resolve("store"));
+        final Path tree = Files.createDirectories(workdir.resolve("ws/graal/bin"));
+        Files.write(tree.resolve("gu"), "gu".getBytes(StandardCharsets.UTF_8));
+        store.adopt("sha", tree.getParent(), tree.getParent());
+        assertTrue(Files.exists(workdir.resolve("store/sha/bin/gu")));
+        assertTrue(Files.exists(tree.resolveSibling(ContentStore.MARKER)));
+        assertEquals(emptyList(), store.gc());
+    }
+
+    private void delete(final Path folder) throws IOException {
+        try (final Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(it -> {
+                try {
+                    Files.delete(it);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+}
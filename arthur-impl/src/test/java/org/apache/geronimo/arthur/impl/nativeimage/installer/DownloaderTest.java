@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DownloaderTest {
+    @TempDir
+    Path workdir;
+
+    private HttpServer server;
+    private byte[] content;
+    private String publishedSha256;
+    private boolean ranges = true;
+    private final AtomicInteger dropFirstRequests = new AtomicInteger();
+    private final List<String> requestedRanges = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void parallelRanges() throws IOException {
+        start((int) (Downloader.MIN_CHUNK_SIZE * 2 + 123));
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 4);
+        final Downloader.Probe probe = downloader.probe();
+        assertTrue(probe.isRanges());
+        assertEquals(content.length, probe.getLength());
+
+        final Path target = workdir.resolve("graal.tar.gz");
+        assertEquals(publishedSha256, downloader.download(probe, target, null));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(2, requestedRanges.size());
+        try (final Stream<Path> files = Files.list(workdir)) {
+            assertEquals(1, files.count()); // no .part left
+        }
+    }
+
+    @Test
+    void resume() throws IOException {
+        start(100_000);
+        final Path target = workdir.resolve("graal.tar.gz");
+        final byte[] downloaded = new byte[1000];
+        System.arraycopy(content, 0, downloaded, 0, downloaded.length);
+        Files.write(workdir.resolve("graal.tar.gz.part"), downloaded);
+
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 4);
+        final Downloader.Probe probe = downloader.probe();
+        assertTrue(downloader.useRanges(probe, target));
+        downloader.download(probe, target, publishedSha256);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals("bytes=1000-99999", requestedRanges.get(0));
+    }
+
+    @Test
+    void resumeParallelRanges() throws IOException {
+        start((int) (Downloader.MIN_CHUNK_SIZE * 2 + 123));
+        final long chunkSize = content.length / 2;
+        final Path part = workdir.resolve("graal.tar.gz.part");
+        final byte[] downloaded = new byte[content.length]; // preallocated, only the first bytes of each range are there
+        System.arraycopy(content, 0, downloaded, 0, 1000);
+        System.arraycopy(content, (int) chunkSize, downloaded, (int) chunkSize, 500);
+        Files.write(part, downloaded);
+        writeLayout(content.length, 2, 1000, 500);
+
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 2);
+        assertEquals(publishedSha256, downloader.download(downloader.probe(), target, null));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(
+                asList("bytes=1000-" + (chunkSize - 1), "bytes=" + (chunkSize + 500) + "-" + (content.length - 1)),
+                requestedRanges.stream().sorted().collect(toList()));
+        assertFalse(Files.exists(workdir.resolve("graal.tar.gz.part.layout")));
+    }
+
+    @Test
+    void restartOnLayoutChange() throws IOException {
+        start((int) (Downloader.MIN_CHUNK_SIZE * 2 + 123));
+        Files.write(workdir.resolve("graal.tar.gz.part"), new byte[content.length]); // garbage from a 3 connections download
+        writeLayout(content.length, 3, 1000, 1000, 1000);
+
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 2);
+        downloader.download(downloader.probe(), target, null);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(2, requestedRanges.size());
+        assertTrue(requestedRanges.contains("bytes=0-" + (content.length / 2 - 1)), requestedRanges::toString);
+    }
+
+    @Test
+    void restartParallelDownloadWithSingleConnection() throws IOException {
+        start((int) (Downloader.MIN_CHUNK_SIZE * 2 + 123));
+        Files.write(workdir.resolve("graal.tar.gz.part"), new byte[content.length]);
+        writeLayout(content.length, 2, 1000, 1000);
+
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 1);
+        downloader.download(downloader.probe(), target, null);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(asList("bytes=0-" + (content.length - 1)), requestedRanges);
+    }
+
+    @Test
+    void retryDroppedConnection() throws IOException {
+        start(100_000);
+        dropFirstRequests.set(1);
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 1);
+        downloader.download(downloader.probe(), target, null);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(2, requestedRanges.size());
+        assertTrue(requestedRanges.get(1).startsWith("bytes=") && !requestedRanges.get(1).startsWith("bytes=0-"), requestedRanges::toString);
+    }
+
+    @Test
+    void noRangeSupport() throws IOException {
+        ranges = false;
+        start(100_000);
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 4);
+        final Downloader.Probe probe = downloader.probe();
+        assertFalse(downloader.useRanges(probe, target));
+        downloader.download(probe, target, null);
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    void checksumMismatch() throws IOException {
+        start(100_000);
+        publishedSha256 = repeat('a', 64);
+        final Path target = workdir.resolve("graal.tar.gz");
+        final Downloader downloader = new Downloader(url(), 5000, 5000, 4);
+        assertThrows(IllegalStateException.class, () -> downloader.download(downloader.probe(), target, null));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(workdir.resolve("graal.tar.gz.part")));
+    }
+
+    @Test
+    void readTimeout() throws IOException {
+        start(100_000);
+        server.removeContext("/graal.tar.gz");
+        server.createContext("/graal.tar.gz").setHandler(ex -> {
+            try {
+                Thread.sleep(2000);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+            ex.close();
+        });
+        final Downloader downloader = new Downloader(url(), 5000, 100, 1);
+        assertThrows(IOException.class, () -> downloader.download(downloader.probe(), workdir.resolve("graal.tar.gz"), null));
+    }
+
+    private void start(final int size) throws IOException {
+        content = new byte[size];
+        new Random(1234).nextBytes(content);
+        try {
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            publishedSha256 = hex.toString();
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/graal.tar.gz.sha256").setHandler(ex -> {
+            final byte[] bytes = (publishedSha256 + "  graal.tar.gz\n").getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+            ex.getResponseBody().write(bytes);
+            ex.close();
+        });
+        server.createContext("/graal.tar.gz").setHandler(this::serve);
+        server.start();
+    }
+
+    private void serve(final HttpExchange ex) throws IOException {
+        if (ranges) {
+            ex.getResponseHeaders().set("Accept-Ranges", "bytes");
+        }
+        if ("HEAD".equals(ex.getRequestMethod())) {
+            ex.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+            ex.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            ex.close();
+            return;
+        }
+
+        int start = 0;
+        int end = content.length;
+        final String range = ex.getRequestHeaders().getFirst("Range");
+        if (ranges && range != null) {
+            requestedRanges.add(range);
+            final String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty()) {
+                end = Integer.parseInt(bounds[1]) + 1;
+            }
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + content.length);
+            ex.sendResponseHeaders(HttpURLConnection.HTTP_PARTIAL, end - start);
+        } else {
+            ex.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+        }
+        final OutputStream body = ex.getResponseBody();
+        if (dropFirstRequests.getAndDecrement() > 0) { // simulate a network failure in the middle of the download
+            body.write(content, start, (end - start) / 2);
+            body.flush();
+            ex.close();
+            return;
+        }
+        body.write(content, start, end - start);
+        ex.close();
+    }
+
+    private void writeLayout(final long length, final int chunks, final long... done) throws IOException {
+        final Properties layout = new Properties();
+        layout.setProperty("length", Long.toString(length));
+        layout.setProperty("chunks", Integer.toString(chunks));
+        for (int i = 0; i < done.length; i++) {
+            layout.setProperty("chunk." + i, Long.toString(done[i]));
+        }
+        try (final OutputStream stream = Files.newOutputStream(workdir.resolve("graal.tar.gz.part.layout"))) {
+            layout.store(stream, null);
+        }
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/graal.tar.gz";
+    }
+
+    private String repeat(final char c, final int count) {
+        final StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
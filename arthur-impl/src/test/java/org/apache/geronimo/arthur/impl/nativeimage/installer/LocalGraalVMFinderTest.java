@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.installer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalGraalVMFinderTest {
+    @TempDir
+    Path workdir;
+
+    @Test
+    void matchVersion() throws IOException {
+        final Path java8 = home("graal8", "19.2.1", "1.8.0_232");
+        final Path java11 = home("graal11", "20.3.0", "11.0.9");
+        assertTrue(new LocalGraalVMFinder("19.2.1").matches(java8));
+        assertTrue(new LocalGraalVMFinder("19.2.1-grl").matches(java8));
+        assertFalse(new LocalGraalVMFinder("19.2.0").matches(java8));
+        assertTrue(new LocalGraalVMFinder("20.3.0.r11").matches(java11));
+        assertFalse(new LocalGraalVMFinder("20.3.0.r8").matches(java11));
+        assertTrue(new LocalGraalVMFinder("20.3.0").matches(java11));
+        assertFalse(new LocalGraalVMFinder("19.2.1").matches(workdir.resolve("missing")));
+        assertThrows(IllegalArgumentException.class, () -> new LocalGraalVMFinder("latest"));
+    }
+
+    @Test
+    void ignoreHomesWithoutNativeImage() throws IOException {
+        final Path graal = homeWithoutNativeImage("graal", "19.2.1", "1.8.0_232");
+        assertFalse(new LocalGraalVMFinder("19.2.1").matches(graal));
+    }
+
+    @Test
+    void findInSdkman() throws IOException {
+        final Path sdkman = workdir.resolve("sdkman");
+        final Path graal = home("sdkman/candidates/java/20.3.0.r11-grl", "20.3.0", "11.0.9");
+        home("sdkman/candidates/java/19.2.1-grl", "19.2.1", "1.8.0_232");
+        home("sdkman/candidates/java/11.0.9-open", null, "11.0.9");
+
+        final List<Path> candidates = LocalGraalVMFinder.defaultCandidates(singletonMap("SDKMAN_DIR", sdkman.toString()));
+        assertEquals(2, candidates.size());
+        assertEquals(Optional.of(graal), new LocalGraalVMFinder("20.3.0.r11").find(candidates));
+        assertEquals(Optional.empty(), new LocalGraalVMFinder("21.0.0.r11").find(candidates));
+    }
+
+    @Test
+    void installerUsesLocalHome() throws IOException {
+        final Path graal = home("graal", "19.2.1", "1.8.0_232");
+        final Path installed = new SdkmanGraalVMInstaller(SdkmanGraalVMInstallerConfiguration.builder()
+                .version("19.2.1")
+                .gav("org.apache.geronimo.arthur.cache:graal:tar.gz:linux64:19.2.1")
+                .localHomes(asList(workdir.resolve("missing"), graal))
+                .resolver(gav -> {
+                    throw new IllegalStateException("should use the local GraalVM");
+                })
+                .build())
+                .install();
+        assertEquals(graal, installed);
+        try (final Stream<Path> files = Files.list(workdir)) { // nothing created next to the user GraalVM (lock)
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void localHomeIsNotModified() throws IOException {
+        final Path graal = home("graal", "19.2.1", "1.8.0_232");
+        final SdkmanGraalVMInstaller installer = new SdkmanGraalVMInstaller(SdkmanGraalVMInstallerConfiguration.builder()
+                .version("19.2.1")
+                .gav("org.apache.geronimo.arthur.cache:graal:tar.gz:linux64:19.2.1")
+                .localHomes(singletonList(graal))
+                .nativeImageComponentGav("org.apache.geronimo.arthur.cache:graal:jar:native-image-linux64:19.2.1")
+                .resolver(gav -> { // neither the distribution nor the cached native-image component
+                    throw new IllegalStateException("should use the local GraalVM");
+                })
+                .build());
+        installer.install();
+        assertEquals(graal.resolve("bin/native-image"), installer.installNativeImage());
+        try (final Stream<Path> files = Files.list(workdir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private Path home(final String name, final String graalVersion, final String javaVersion) throws IOException {
+        final Path home = homeWithoutNativeImage(name, graalVersion, javaVersion);
+        Files.write(home.resolve("bin/native-image"), new byte[0]);
+        return home;
+    }
+
+    private Path homeWithoutNativeImage(final String name, final String graalVersion, final String javaVersion) throws IOException {
+        final Path home = Files.createDirectories(workdir.resolve(name));
+        Files.createDirectories(home.resolve("bin"));
+        Files.write(home.resolve("release"), (
+                "JAVA_VERSION=\"" + javaVersion + "\"\n" +
+                        (graalVersion != null ? "GRAALVM_VERSION=" + graalVersion + "\n" : ""))
+                .getBytes(StandardCharsets.UTF_8));
+        return home;
+    }
+}
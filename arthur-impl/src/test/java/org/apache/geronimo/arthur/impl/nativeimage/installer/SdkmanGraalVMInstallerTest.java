@@ -16,10 +16,16 @@
  */
 package org.apache.geronimo.arthur.impl.nativeimage.installer;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -28,6 +34,13 @@ import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -43,11 +56,14 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.geronimo.arthur.impl.nativeimage.archive.Extractor;
 import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstaller;
 import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstallerConfiguration;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 class SdkmanGraalVMInstallerTest {
+    private static final long ARCHIVE_TIME = 1577836800000L;
+
     @TempDir
     Path workdir;
 
@@ -57,6 +73,246 @@ class SdkmanGraalVMInstallerTest {
             "19.2.1-grl,cygwin,zip" // zip
     })
     void install(final String version, final String platform) throws IOException {
+        withServer(version, platform, baseUrl -> {
+            final SpiedResolver resolver = new SpiedResolver();
+            final SpiedInstaller artifactInstaller = new SpiedInstaller();
+            final SdkmanGraalVMInstaller installer = new SdkmanGraalVMInstaller(newConfiguration(
+                    workdir, platform, version, baseUrl, artifactInstaller, resolver).build());
+            final Path installed = installer.install();
+            assertNotNull(installed);
+            assertGu(installed);
+
+            assertEquals(1, resolver.counter.get());
+            assertEquals(1, artifactInstaller.counter.get());
+
+            // ensure we use the cache
+            resolver.result = installed; // we should put the archive we we only check the parent anyway so not a big deal
+            assertEquals(installed, installer.install());
+            assertEquals(2, resolver.counter.get());
+            assertEquals(1, artifactInstaller.counter.get());
+        });
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "19.2.1-grl,linux64,tar.gz", // tar.gz
+            "19.2.1-grl,cygwin,zip" // zip
+    })
+    void streamingInstall(final String version, final String platform, final String extension) throws IOException {
+        withServer(version, platform, baseUrl -> {
+            final Path archive = workdir.resolve("m2/graal/" + version + "/graal-" + version + '-' + platform + '.' + extension);
+            final SpiedInstaller artifactInstaller = new SpiedInstaller();
+            final SdkmanGraalVMInstaller installer = new SdkmanGraalVMInstaller(newConfiguration(
+                    workdir, platform, version, baseUrl, artifactInstaller, new SpiedResolver())
+                    .localPath(gav -> archive)
+                    .streamExtractor(new Extractor()::unpack)
+                    .build());
+            final Path installed = installer.install();
+            assertEquals(archive.resolveSibling("distribution_exploded"), installed);
+            assertGu(installed);
+
+            // archive is cached in the "local repository" without any additional copy
+            assertEquals(0, artifactInstaller.counter.get());
+            assertArrayEquals(createFakeArchive(version, platform).toByteArray(), Files.readAllBytes(archive));
+            assertEquals(64, Files.readAllLines(archive.resolveSibling(archive.getFileName() + ".sha256")).get(0).length());
+            assertFalse(Files.exists(archive.resolveSibling(archive.getFileName() + ".part")));
+            assertFalse(Files.exists(archive.resolveSibling("distribution_exploded.part")));
+        });
+    }
+
+    @Test
+    void invalidChecksum() throws IOException {
+        withServer("19.2.1-grl", "linux64", baseUrl -> {
+            final Path archive = workdir.resolve("m2/graal.tar.gz");
+            final SdkmanGraalVMInstaller installer = new SdkmanGraalVMInstaller(newConfiguration(
+                    workdir, "linux64", "19.2.1-grl", baseUrl, new SpiedInstaller(), new SpiedResolver())
+                    .localPath(gav -> archive)
+                    .streamExtractor(new Extractor()::unpack)
+                    .sha256("0000")
+                    .build());
+            final IllegalStateException error = assertThrows(IllegalStateException.class, installer::install);
+            assertTrue(error.getMessage().contains("checksum"), error.getMessage());
+            assertFalse(Files.exists(archive));
+            assertFalse(Files.exists(archive.resolveSibling(archive.getFileName() + ".part")));
+            assertFalse(Files.exists(archive.resolveSibling("distribution_exploded")));
+            assertFalse(Files.exists(archive.resolveSibling("distribution_exploded.part")));
+        });
+    }
+
+    @Test
+    void concurrentInstallationsAndRecovery() throws Exception {
+        final Path archive = workdir.resolve("m2/graal.tar.gz");
+        Files.createDirectories(archive.getParent());
+        Files.write(archive, createFakeArchive("19.2.1-grl", "linux64").toByteArray());
+        final AtomicInteger extractions = new AtomicInteger();
+        final Extractor extractor = new Extractor();
+        final SdkmanGraalVMInstallerConfiguration configuration = SdkmanGraalVMInstallerConfiguration.builder()
+                .gav("org.apache.geronimo.arthur.cache:graal:tar.gz:linux64:19.2.1-grl")
+                .workdir(workdir)
+                .resolver(gav -> archive)
+                .extractor((from, to) -> {
+                    extractions.incrementAndGet();
+                    try {
+                        Thread.sleep(200); // let the other thread wait for the lock
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    extractor.unpack(from, to);
+                })
+                .build();
+
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<Path>> homes = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                homes.add(pool.submit(() -> new SdkmanGraalVMInstaller(configuration).install()));
+            }
+            for (final Future<Path> home : homes) {
+                assertGu(home.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, extractions.get());
+        final Path exploded = archive.resolveSibling("distribution_exploded");
+        assertTrue(Files.exists(exploded.resolve(".arthur.installed")));
+        assertFalse(Files.exists(archive.resolveSibling("distribution_exploded.part")));
+
+        // killed build/corruption: a missing file triggers a reinstallation
+        Files.delete(exploded.resolve("bin/gu"));
+        assertGu(new SdkmanGraalVMInstaller(configuration).install());
+        assertEquals(2, extractions.get());
+    }
+
+    @Test
+    void offlineNativeImageComponent() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path archive = workdir.resolve("m2/graal.tar.gz");
+        final Path component = workdir.resolve("m2/graal-native-image.jar");
+        final Path guLog = workdir.resolve("gu.log");
+        Files.createDirectories(archive.getParent());
+        Files.write(archive, createFakeArchive("19.2.1-grl", "linux64").toByteArray());
+        final Extractor extractor = new Extractor();
+        final AtomicInteger downloads = new AtomicInteger();
+        final HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/").setHandler(ex -> {
+            if (!"/native-image.jar".equals(ex.getRequestURI().getPath())) { // checksum
+                ex.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            } else if ("HEAD".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            } else {
+                downloads.incrementAndGet();
+                final byte[] bytes = "component".getBytes(StandardCharsets.UTF_8);
+                ex.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+                ex.getResponseBody().write(bytes);
+            }
+            ex.close();
+        });
+        final Function<Boolean, SdkmanGraalVMInstallerConfiguration> configuration = offline -> SdkmanGraalVMInstallerConfiguration.builder()
+                .offline(offline)
+                .gav("org.apache.geronimo.arthur.cache:graal:tar.gz:linux64:19.2.1-grl")
+                .nativeImageComponentGav("org.apache.geronimo.arthur.cache:graal:jar:native-image-linux64:19.2.1-grl")
+                .nativeImageComponentUrl(offline ? null : "http://localhost:" + server.getAddress().getPort() + "/native-image.jar")
+                .workdir(workdir.resolve("work"))
+                .resolver(gav -> {
+                    if (!gav.contains(":jar:")) {
+                        return archive;
+                    }
+                    if (!Files.exists(component)) {
+                        throw new IllegalStateException("Can't find " + gav);
+                    }
+                    return component;
+                })
+                .installer((gav, file) -> {
+                    try {
+                        return Files.copy(file, component, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .extractor((from, to) -> {
+                    extractor.unpack(from, to);
+                    try { // fake gu creating native-image
+                        final Path gu = to.resolve("bin/gu");
+                        Files.write(gu, ("#! /bin/sh\n" +
+                                "echo \"$*\" >> '" + guLog + "'\n" +
+                                "touch \"$(dirname $0)/native-image\"\n").getBytes(StandardCharsets.UTF_8));
+                        assertTrue(gu.toFile().setExecutable(true));
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .build();
+        final String expectedGuCall = "-L install " + component.toAbsolutePath();
+        try {
+            server.start();
+            final SdkmanGraalVMInstaller installer = new SdkmanGraalVMInstaller(configuration.apply(false));
+            final Path home = installer.install();
+            assertEquals(home.resolve("bin/native-image"), installer.installNativeImage());
+            assertEquals(1, downloads.get());
+            assertEquals("component", new String(Files.readAllBytes(component), StandardCharsets.UTF_8));
+            assertEquals(singletonList(expectedGuCall), Files.readAllLines(guLog));
+
+            // post-install tree is the reference, no reinstallation
+            final SdkmanGraalVMInstaller cached = new SdkmanGraalVMInstaller(configuration.apply(true));
+            assertEquals(home, cached.install());
+            cached.installNativeImage();
+            assertEquals(1, Files.readAllLines(guLog).size());
+
+            // wiped distribution: extracted and installed again without network
+            Files.delete(home.resolve("bin/native-image"));
+            final SdkmanGraalVMInstaller offline = new SdkmanGraalVMInstaller(configuration.apply(true));
+            assertEquals(home, offline.install());
+            assertEquals(home.resolve("bin/native-image"), offline.installNativeImage());
+            assertEquals(1, downloads.get());
+            assertEquals(asList(expectedGuCall, expectedGuCall), Files.readAllLines(guLog));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void sharedContentStore() throws IOException {
+        final byte[] content = createFakeArchive("19.2.1-grl", "linux64").toByteArray();
+        final ContentStore store = new ContentStore(workdir.resolve("store"));
+        final AtomicInteger extractions = new AtomicInteger();
+        final Extractor extractor = new Extractor();
+        final List<Path> homes = new ArrayList<>();
+        for (final String workspace : asList("ws1", "ws2")) {
+            final Path archive = workdir.resolve(workspace + "/m2/graal.tar.gz");
+            Files.createDirectories(archive.getParent());
+            Files.write(archive, content);
+            homes.add(new SdkmanGraalVMInstaller(SdkmanGraalVMInstallerConfiguration.builder()
+                    .gav("org.apache.geronimo.arthur.cache:graal:tar.gz:linux64:19.2.1-grl")
+                    .workdir(workdir.resolve(workspace))
+                    .resolver(gav -> archive)
+                    .extractor((from, to) -> {
+                        extractions.incrementAndGet();
+                        extractor.unpack(from, to);
+                    })
+                    .contentStore(store)
+                    .build())
+                    .install());
+        }
+        assertEquals(1, extractions.get());
+        homes.forEach(home -> {
+            try {
+                assertGu(home);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(Files.isSameFile(homes.get(0).resolve("bin/gu"), homes.get(1).resolve("bin/gu")));
+    }
+
+    private void assertGu(final Path installed) throws IOException {
+        final Path gu = installed.resolve("bin/gu");
+        assertTrue(Files.exists(gu));
+        assertEquals("works", Files.lines(gu).collect(joining("\n")));
+    }
+
+    private void withServer(final String version, final String platform, final ServerTask task) throws IOException {
         final String handledApi = "/broker/download/java/" + version + "/" + platform;
         final HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
         server.createContext("/").setHandler(ex -> {
@@ -78,27 +334,7 @@ class SdkmanGraalVMInstallerTest {
         });
         try {
             server.start();
-
-            final SpiedResolver resolver = new SpiedResolver();
-            final SpiedInstaller artifactInstaller = new SpiedInstaller();
-            final SdkmanGraalVMInstaller installer = newInstaller(
-                    workdir, platform, version, "http://localhost:" + server.getAddress().getPort(),
-                    artifactInstaller, resolver);
-            final Path installed = installer.install();
-            assertNotNull(installed);
-
-            final Path gu = installed.resolve("bin/gu");
-            assertTrue(Files.exists(gu));
-            assertEquals("works", Files.lines(gu).collect(joining("\n")));
-
-            assertEquals(1, resolver.counter.get());
-            assertEquals(1, artifactInstaller.counter.get());
-
-            // ensure we use the cache
-            resolver.result = installed; // we should put the archive we we only check the parent anyway so not a big deal
-            assertEquals(installed, installer.install());
-            assertEquals(2, resolver.counter.get());
-            assertEquals(1, artifactInstaller.counter.get());
+            task.run("http://localhost:" + server.getAddress().getPort());
         } finally {
             server.stop(0);
         }
@@ -123,9 +359,14 @@ class SdkmanGraalVMInstallerTest {
         final byte[] guContent = "works".getBytes(StandardCharsets.UTF_8);
         if ("cygwin".equals(platform)) { // zip
             try (final ZipArchiveOutputStream archive = new ZipArchiveOutputStream(outputStream)) {
-                prepareStructure.accept(archive, ZipArchiveEntry::new);
+                prepareStructure.accept(archive, name -> {
+                    final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+                    entry.setTime(ARCHIVE_TIME); // reproducible archive
+                    return entry;
+                });
 
                 final ZipArchiveEntry gu = new ZipArchiveEntry(rootName + "bin/gu");
+                gu.setTime(ARCHIVE_TIME);
                 gu.setSize(guContent.length);
                 archive.putArchiveEntry(gu);
                 archive.write(guContent);
@@ -133,9 +374,14 @@ class SdkmanGraalVMInstallerTest {
             }
         } else { // tar.gz
             try (final TarArchiveOutputStream archive = new TarArchiveOutputStream(new GzipCompressorOutputStream(outputStream))) {
-                prepareStructure.accept(archive, TarArchiveEntry::new);
+                prepareStructure.accept(archive, name -> {
+                    final TarArchiveEntry entry = new TarArchiveEntry(name);
+                    entry.setModTime(ARCHIVE_TIME); // reproducible archive
+                    return entry;
+                });
 
                 final TarArchiveEntry gu = new TarArchiveEntry(rootName + "bin/gu");
+                gu.setModTime(ARCHIVE_TIME);
                 gu.setSize(guContent.length);
                 archive.putArchiveEntry(gu);
                 archive.write(guContent);
@@ -145,10 +391,10 @@ class SdkmanGraalVMInstallerTest {
         return outputStream;
     }
 
-    private SdkmanGraalVMInstaller newInstaller(final Path workdir, final String platform, final String version,
-                                                final String baseUrl, final SpiedInstaller installer, final SpiedResolver resolver) {
-        return new SdkmanGraalVMInstaller(
-                SdkmanGraalVMInstallerConfiguration.builder()
+    private SdkmanGraalVMInstallerConfiguration.SdkmanGraalVMInstallerConfigurationBuilder newConfiguration(
+            final Path workdir, final String platform, final String version,
+            final String baseUrl, final SpiedInstaller installer, final SpiedResolver resolver) {
+        return SdkmanGraalVMInstallerConfiguration.builder()
                 .offline(false)
                 .inheritIO(true)
                 .url(baseUrl + "/broker/download/java/" + version + "/" + platform)
@@ -158,8 +404,12 @@ class SdkmanGraalVMInstallerTest {
                 .workdir(workdir)
                 .resolver(resolver::resolve)
                 .installer(installer::install)
-                .extractor(new Extractor()::unpack)
-                .build());
+                .extractor(new Extractor()::unpack);
+    }
+
+    @FunctionalInterface
+    private interface ServerTask {
+        void run(String baseUrl) throws IOException;
     }
 
     public static class SpiedInstaller {
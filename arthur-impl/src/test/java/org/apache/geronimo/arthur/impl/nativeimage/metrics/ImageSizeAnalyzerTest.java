@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ImageSizeAnalyzerTest {
+    @Test
+    void analyze() {
+        final Map<String, Object> dump = new HashMap<>();
+        dump.put("code-breakdown", asList(
+                entry("org.app.Big.run(java.lang.String)", 3000),
+                entry("org.app.Big$Inner.call()", 1000),
+                entry("org.lib.Small.get()", 500)));
+        dump.put("heap-breakdown", singletonMap("heap-size", asList(
+                entry("java.lang.String", 2000),
+                entry("org.lib.Small", 100))));
+
+        final ImageSizeReport report = new ImageSizeAnalyzer().analyze("app", dump,
+                singletonMap("reflection:org.app.Big", singletonList("org.app.MyExtension")), 10);
+        assertEquals(4500, report.getCodeSize());
+        assertEquals(2100, report.getHeapSize());
+
+        assertEquals(asList("org.app.Big", "java.lang.String", "org.app.Big$Inner", "org.lib.Small"), names(report.getTypes()));
+        assertEquals(asList("org.app", "java.lang", "org.lib"), names(report.getPackages()));
+        assertEquals(asList("org.app.MyExtension", ImageSizeAnalyzer.UNREGISTERED), names(report.getOrigins()));
+        assertEquals(4000, report.getOrigins().get(0).getSize()); // nested class attributed to its enclosing registration
+        assertEquals(2600, report.getOrigins().get(1).getSize());
+
+        final String html = new ImageSizeAnalyzer().toHtml(report);
+        assertTrue(html.contains("<td>org.app.Big$Inner</td>"), html);
+    }
+
+    @Test
+    void toType() {
+        assertEquals("org.foo.Bar", ImageSizeAnalyzer.toType("org.foo.Bar.method(java.lang.String, int)"));
+        assertEquals("org.foo.Bar", ImageSizeAnalyzer.toType("org.foo.Bar.<init>()"));
+    }
+
+    private List<String> names(final List<ImageSizeReport.Entry> entries) {
+        return entries.stream().map(ImageSizeReport.Entry::getName).collect(toList());
+    }
+
+    private Map<String, Object> entry(final String name, final long size) {
+        final Map<String, Object> entry = new HashMap<>();
+        entry.put("name", name);
+        entry.put("size", size);
+        return entry;
+    }
+}
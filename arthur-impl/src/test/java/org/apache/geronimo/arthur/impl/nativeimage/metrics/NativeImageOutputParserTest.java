@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class NativeImageOutputParserTest {
+    @Test
+    void legacyPhases() {
+        final NativeImageOutputParser parser = new NativeImageOutputParser();
+        Stream.of(
+                "[/opt/sample/target/sample.graal.bin:16697]    classlist:   6,427.14 ms",
+                "[/opt/sample/target/sample.graal.bin:16697]        setup:   3,480.51 ms,  0.96 GB",
+                "ScriptEngineManager providers.next(): javax.script.ScriptEngineFactory: Provider could not be instantiated",
+                "[/opt/sample/target/sample.graal.bin:16697]   (typeflow):  15,605.58 ms,  2.12 GB",
+                "[/opt/sample/target/sample.graal.bin:16697]     analysis:  30,057.86 ms,  2.50 GB",
+                "[/opt/sample/target/sample.graal.bin:16697]      compile:  27,352.51 ms,  2.31 GB",
+                "[/opt/sample/target/sample.graal.bin:16697]      [total]:  72,280.13 ms")
+                .forEach(parser);
+        final NativeImageMetrics metrics = parser.getMetrics();
+        assertEquals(6427.14, metrics.getPhasesDurations().get("classlist"));
+        assertEquals(15605.58, metrics.getPhasesDurations().get("typeflow"));
+        assertEquals(72280.13, metrics.getPhasesDurations().get("total"));
+        assertEquals(6, metrics.getPhasesDurations().size());
+        assertEquals(0.96, metrics.getPhasesMemory().get("setup"));
+        assertEquals(4, metrics.getPhasesMemory().size());
+        assertEquals(2.5, metrics.getPeakMemory());
+        assertNull(metrics.getReachableClasses());
+    }
+
+    @Test
+    void stages() {
+        final NativeImageOutputParser parser = new NativeImageOutputParser();
+        Stream.of(
+                "[1/7] Initializing...                                            (5.1s @ 0.24GB)",
+                "[2/7] Performing analysis...  [*******]                         (64.3s @ 1.17GB)",
+                "   4,023 (78.43%) of  5,134 types reachable",
+                "  20,193 (51.13%) of 39,493 methods reachable",
+                "Peak RSS: 2.85GB | CPU load: 7.02",
+                "Finished generating 'sample' in 1m 23s.")
+                .forEach(parser);
+        final NativeImageMetrics metrics = parser.getMetrics();
+        assertEquals(5100., metrics.getPhasesDurations().get("initializing"));
+        assertEquals(64300., metrics.getPhasesDurations().get("performing-analysis"));
+        assertEquals(83000., metrics.getPhasesDurations().get("total"));
+        assertEquals(1.17, metrics.getPhasesMemory().get("performing-analysis"));
+        assertEquals(4023, metrics.getReachableClasses());
+        assertEquals(20193, metrics.getReachableMethods());
+        assertEquals(2.85, metrics.getPeakMemory());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "6,427.14|6427.14",
+            "6.427,14|6427.14",
+            "0.96|0.96",
+            "1,000|1000",
+            "12|12"
+    })
+    void toNumber(final String raw, final double expected) {
+        assertEquals(expected, NativeImageOutputParser.toNumber(raw));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.pgo;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProfileGuidedOptimizationTest {
+    @TempDir
+    Path workdir;
+
+    private final List<List<String>> builds = new ArrayList<>();
+    private ArthurNativeImageConfiguration configuration;
+    private PgoConfiguration pgo;
+
+    @BeforeEach
+    void init() throws IOException {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase().contains("win"));
+
+        final Path classes = Files.createDirectories(workdir.resolve("classes"));
+        Files.write(classes.resolve("Main.class"), new byte[]{1});
+
+        configuration = new ArthurNativeImageConfiguration();
+        configuration.setClasspath(singletonList(classes.toString()));
+        configuration.setMain("test.Main");
+        configuration.setOutput(workdir.resolve("main.bin").toString());
+
+        pgo = new PgoConfiguration();
+        pgo.setCache(workdir.resolve("cache"));
+        pgo.setInheritIO(false);
+    }
+
+    @Test
+    void pipeline() {
+        // instrumented binary writes the profile when it exits
+        new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration);
+        assertEquals(2, builds.size());
+        assertTrue(builds.get(0).contains("--pgo-instrument"));
+        final String profileOption = builds.get(1).stream().filter(it -> it.startsWith("--pgo=")).findFirst().orElseThrow(IllegalStateException::new);
+        assertTrue(Files.exists(Paths.get(profileOption.substring("--pgo=".length()))));
+
+        // cached profile: only the optimized build is done
+        builds.clear();
+        new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration);
+        assertEquals(1, builds.size());
+        assertEquals(singletonList(profileOption), builds.get(0));
+    }
+
+    @Test
+    void cacheSurvivesRegeneratedConfiguration() throws IOException {
+        final Path reflection = workdir.resolve("reflection.json");
+        Files.write(reflection, "[]".getBytes(StandardCharsets.UTF_8));
+        configuration.setReflectionConfigurationFiles(singletonList(reflection.toString()));
+        configuration.setCustomOptions(null);
+
+        new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration);
+        assertEquals(2, builds.size());
+
+        // next build regenerates the same configuration
+        Files.write(reflection, "[]".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(reflection, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        builds.clear();
+        new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration);
+        assertEquals(1, builds.size());
+        assertEquals(1, listCache());
+
+        // different configuration: new profile
+        Files.write(reflection, "[{}]".getBytes(StandardCharsets.UTF_8));
+        builds.clear();
+        new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration);
+        assertEquals(2, builds.size());
+        assertEquals(2, listCache());
+    }
+
+    @Test
+    void workloadWithoutProfile() {
+        pgo.setWorkload(asList("/bin/sh", "-c", "test -x ${binary}"));
+        assertThrows(IllegalStateException.class, () -> new ProfileGuidedOptimization(pgo, this::fakeBuild).run(configuration));
+        assertEquals(1, builds.size());
+    }
+
+    private long listCache() throws IOException {
+        try (final Stream<Path> list = Files.list(pgo.getCache())) {
+            return list.count();
+        }
+    }
+
+    private void fakeBuild(final ArthurNativeImageConfiguration configuration) {
+        builds.add(new ArrayList<>(configuration.getCustomOptions()));
+        try {
+            final Path output = Paths.get(configuration.getOutput());
+            Files.write(output, "#! /bin/sh\necho 'profile' > default.iprof\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(output.toFile().setExecutable(true));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
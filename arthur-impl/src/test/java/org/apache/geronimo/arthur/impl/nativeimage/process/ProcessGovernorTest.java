@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.impl.nativeimage.process;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ProcessGovernorTest {
+    @Test
+    void toBytes() {
+        assertEquals(512, ProcessGovernor.toBytes("512"));
+        assertEquals(2048, ProcessGovernor.toBytes("2k"));
+        assertEquals(1536L * 1024 * 1024, ProcessGovernor.toBytes("1536m"));
+        assertEquals(4L * 1024 * 1024 * 1024, ProcessGovernor.toBytes("4G"));
+    }
+
+    @Test
+    void alwaysAdmitWhenIdle() {
+        final ProcessGovernor governor = new ProcessGovernor(1024);
+        try (final ProcessGovernor.Permit permit = governor.tryAcquire("1g", 1)) {
+            assertNotNull(permit);
+        }
+    }
+
+    @Test
+    void concurrencyLimit() {
+        assertAdmission(new ProcessGovernor(ProcessGovernor.toBytes("16g")), 1);
+    }
+
+    @Test
+    void memoryLimit() {
+        assertAdmission(new ProcessGovernor(ProcessGovernor.toBytes("3g")), 0);
+    }
+
+    @Test
+    void unlimited() {
+        final ProcessGovernor governor = new ProcessGovernor(ProcessGovernor.toBytes("16g"));
+        try (final ProcessGovernor.Permit first = governor.tryAcquire("2g", 0);
+             final ProcessGovernor.Permit second = governor.tryAcquire("2g", 0)) {
+            assertNotNull(first);
+            assertNotNull(second);
+        }
+    }
+
+    @Test
+    void releaseWakesUpWaiters() throws InterruptedException {
+        final ProcessGovernor governor = new ProcessGovernor(ProcessGovernor.toBytes("16g"));
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final Thread second;
+        try (final ProcessGovernor.Permit first = governor.acquire("2g", 1)) {
+            second = new Thread(() -> {
+                try (final ProcessGovernor.Permit permit = governor.acquire("2g", 1)) {
+                    admitted.countDown();
+                }
+            });
+            second.start();
+            while (governor.getWaiting() == 0) { // no timing assumption, just wait for the thread to block
+                Thread.yield();
+            }
+            assertEquals(1, admitted.getCount());
+        }
+        assertTrue(admitted.await(1, TimeUnit.MINUTES));
+        second.join();
+        assertEquals(0, governor.getWaiting());
+    }
+
+    private void assertAdmission(final ProcessGovernor governor, final int maxConcurrency) {
+        try (final ProcessGovernor.Permit first = governor.tryAcquire("2g", maxConcurrency)) {
+            assertNotNull(first);
+            assertNull(governor.tryAcquire("2g", maxConcurrency));
+        }
+        try (final ProcessGovernor.Permit permit = governor.tryAcquire("2g", maxConcurrency)) {
+            assertNotNull(permit);
+        }
+    }
+}
@@ -41,16 +41,16 @@ public class MavenArthurExtension implements ArthurExtension {
             return;
         }
         if (ctx.reflections != null && !ctx.reflections.isEmpty()) {
-            ctx.reflections.forEach(context::register);
+            ctx.reflections.forEach(it -> context.register(it, "pom.xml <reflections> configuration"));
         }
         if (ctx.resources != null && !ctx.resources.isEmpty()) {
-            ctx.resources.forEach(context::register);
+            ctx.resources.forEach(it -> context.register(it, "pom.xml <resources> configuration"));
         }
         if (ctx.bundles != null && !ctx.bundles.isEmpty()) {
-            ctx.bundles.forEach(context::register);
+            ctx.bundles.forEach(it -> context.register(it, "pom.xml <bundles> configuration"));
         }
         if (ctx.dynamicProxies != null && !ctx.dynamicProxies.isEmpty()) {
-            ctx.dynamicProxies.forEach(context::register);
+            ctx.dynamicProxies.forEach(it -> context.register(it, "pom.xml <dynamicProxies> configuration"));
         }
     }
 
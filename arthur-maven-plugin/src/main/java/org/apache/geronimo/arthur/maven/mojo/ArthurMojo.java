@@ -22,15 +22,23 @@ import static java.util.Optional.ofNullable;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
+import org.apache.geronimo.arthur.impl.nativeimage.archive.ExtractionFilter;
 import org.apache.geronimo.arthur.impl.nativeimage.archive.Extractor;
+import org.apache.geronimo.arthur.impl.nativeimage.installer.ContentStore;
+import org.apache.geronimo.arthur.impl.nativeimage.installer.LocalGraalVMFinder;
 import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstaller;
 import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstallerConfiguration;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.toolchain.ToolchainManager;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.DefaultArtifact;
@@ -62,6 +70,9 @@ public abstract class ArthurMojo extends AbstractMojo {
     @Parameter(defaultValue = "${settings.offline}", readonly = true)
     protected boolean offline;
 
+    @Parameter(defaultValue = "${session}", readonly = true)
+    protected MavenSession session;
+
     //
     // Installer parameters
     //
@@ -91,6 +102,75 @@ public abstract class ArthurMojo extends AbstractMojo {
     @Parameter(property = "arthur.graalCacheGav", defaultValue = "org.apache.geronimo.arthur.cache:graal")
     private String graalCacheGav; // groupId:artifactId
 
+    /**
+     * Where to download the native-image component (installable jar) from when it is not yet cached in the local repository
+     * (same gav as `graalCacheGav` with `jar` type and `native-image-<platform>` classifier).
+     * It is then installed with `gu -L` (no network access needed).
+     * `${graalVersion}` is the GraalVM version without java suffix, `${componentPlatform}` is the platform
+     * as named on GraalVM releases (`linux-amd64`, `java11-linux-amd64` for a `.r11` version for example).
+     * If the download fails, `gu install native-image` is used.
+     */
+    @Parameter(property = "arthur.graalNativeImageComponentUrl",
+            defaultValue = "https://github.com/oracle/graal/releases/download/vm-${graalVersion}/native-image-installable-svm-${componentPlatform}-${graalVersion}.jar")
+    private String graalNativeImageComponentUrl;
+
+    /**
+     * In case Graal must be downloaded to get native-image, the expected SHA-256 of the downloaded archive.
+     */
+    @Parameter(property = "arthur.graalSha256")
+    private String graalSha256;
+
+    /**
+     * In case Graal must be downloaded to get native-image, the connect timeout in milliseconds.
+     */
+    @Parameter(property = "arthur.graalDownloadConnectTimeout", defaultValue = "30000")
+    private int graalDownloadConnectTimeout;
+
+    /**
+     * In case Graal must be downloaded to get native-image, the read timeout in milliseconds.
+     */
+    @Parameter(property = "arthur.graalDownloadReadTimeout", defaultValue = "60000")
+    private int graalDownloadReadTimeout;
+
+    /**
+     * In case Graal must be downloaded to get native-image, how many parallel connections can be used
+     * when the server supports range requests. With a single connection (default) the archive is extracted
+     * while being downloaded, parallel connections download it first then extract it.
+     */
+    @Parameter(property = "arthur.graalDownloadConnections", defaultValue = "1")
+    private int graalDownloadConnections;
+
+    /**
+     * Before downloading GraalVM, look for an installed one matching `graalVersion` (validated with its `release` file)
+     * in Maven toolchains (`jdk` type), `GRAALVM_HOME`, `JAVA_HOME` and SDKMan candidates.
+     */
+    @Parameter(property = "arthur.graalLocalDiscovery", defaultValue = "true")
+    private boolean graalLocalDiscovery;
+
+    /**
+     * If set, a folder shared by all the workspaces (local repositories, workdirs) of the machine where GraalVM
+     * distributions are extracted once (per archive checksum). Workspaces then get hard links to these files
+     * (copies if the folder is on another file system) and distributions no more used by any workspace are deleted.
+     */
+    @Parameter(property = "arthur.graalContentStore")
+    private File graalContentStore;
+
+    /**
+     * In case Graal must be downloaded to get native-image, which entries of the distribution to extract
+     * (globs relative to the distribution root). Default extracts what native-image and gu need, cacerts and JVM natives.
+     * Use `**` to extract the whole distribution. Skipped entries are extracted on demand when known to be needed
+     * (languages for example).
+     */
+    @Parameter(property = "arthur.graalExtractionIncludes")
+    private List<String> graalExtractionIncludes;
+
+    /**
+     * In case Graal must be downloaded to get native-image, which entries of the distribution to not extract.
+     * Default skips sources and VisualVM.
+     */
+    @Parameter(property = "arthur.graalExtractionExcludes")
+    private List<String> graalExtractionExcludes;
+
     /**
      * Where the temporary files are created.
      */
@@ -106,13 +186,22 @@ public abstract class ArthurMojo extends AbstractMojo {
     @Component
     private RepositorySystem repositorySystem;
 
+    @Component
+    private ToolchainManager toolchainManager;
+
     protected boolean isInheritIO() {
         return false;
     }
 
     protected SdkmanGraalVMInstaller createInstaller() {
         final String graalPlatform = buildPlatform();
-        final Extractor extractor = new Extractor();
+        final ExtractionFilter extractionFilter = new ExtractionFilter(
+                graalExtractionIncludes == null || graalExtractionIncludes.isEmpty() ?
+                        ExtractionFilter.DEFAULT_INCLUDES : graalExtractionIncludes,
+                graalExtractionExcludes == null ?
+                        ExtractionFilter.DEFAULT_EXCLUDES : graalExtractionExcludes);
+        final Extractor extractor = new Extractor(
+                Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())), extractionFilter);
         return new SdkmanGraalVMInstaller(SdkmanGraalVMInstallerConfiguration.builder()
                 .offline(offline)
                 .inheritIO(isInheritIO())
@@ -124,9 +213,35 @@ public abstract class ArthurMojo extends AbstractMojo {
                 .resolver(gav -> resolve(toArtifact(gav)).getFile().toPath())
                 .installer((gav, file) -> install(file.toFile(), toArtifact(gav)))
                 .extractor(extractor::unpack)
+                .localPath(gav -> repositorySystemSession.getLocalRepository().getBasedir().toPath()
+                        .resolve(repositorySystemSession.getLocalRepositoryManager().getPathForLocalArtifact(toArtifact(gav))))
+                .streamExtractor(extractor::unpack)
+                .nativeImageComponentGav(graalCacheGav + ":jar:native-image-" + graalPlatform + ':' + graalVersion)
+                .nativeImageComponentUrl(buildComponentUrl(graalPlatform))
+                .localHomes(graalLocalDiscovery ? findLocalGraalHomes() : null)
+                .contentStore(graalContentStore != null ? new ContentStore(graalContentStore.toPath()) : null)
+                .extractionFilter(extractionFilter)
+                .partialExtractor(extractor::unpack)
+                .sha256(graalSha256)
+                .connectTimeout(graalDownloadConnectTimeout)
+                .readTimeout(graalDownloadReadTimeout)
+                .connections(graalDownloadConnections)
                 .build());
     }
 
+    private List<Path> findLocalGraalHomes() {
+        final List<Path> homes = new ArrayList<>();
+        if (toolchainManager != null && session != null) {
+            toolchainManager.getToolchains(session, "jdk", emptyMap()).stream()
+                    .map(toolchain -> toolchain.findTool("java"))
+                    .filter(Objects::nonNull)
+                    .map(java -> Paths.get(java).toAbsolutePath().getParent().getParent())
+                    .forEach(homes::add);
+        }
+        homes.addAll(LocalGraalVMFinder.defaultCandidates(System.getenv()));
+        return homes;
+    }
+
     protected org.eclipse.aether.artifact.Artifact toArtifact(final String s) {
         return new DefaultArtifact(s);
     }
@@ -180,6 +295,19 @@ public abstract class ArthurMojo extends AbstractMojo {
                 .replace("${platform}", graalPlatform);
     }
 
+    private String buildComponentUrl(final String graalPlatform) {
+        final String lowerPlatform = graalPlatform.toLowerCase(ROOT);
+        final String os = lowerPlatform.startsWith("linux") ? "linux" :
+                (lowerPlatform.startsWith("darwin") || lowerPlatform.startsWith("mac") ? "darwin" : "windows");
+        final String arch = lowerPlatform.contains("arm") || lowerPlatform.contains("aarch") ? "aarch64" : "amd64";
+        final int javaSeparator = graalVersion.indexOf(".r");
+        final String version = javaSeparator > 0 ? graalVersion.substring(0, javaSeparator) : graalVersion;
+        final String java = javaSeparator > 0 ? "java" + graalVersion.substring(javaSeparator + 2) + '-' : "";
+        return graalNativeImageComponentUrl
+                .replace("${graalVersion}", version)
+                .replace("${componentPlatform}", java + os + '-' + arch);
+    }
+
     private String buildPlatform() {
         if (!"auto".equals(graalPlatform)) {
             return graalPlatform;
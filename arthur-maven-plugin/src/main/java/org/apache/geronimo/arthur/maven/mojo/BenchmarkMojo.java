@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+import static org.apache.maven.plugins.annotations.ResolutionScope.RUNTIME;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbConfig;
+
+import org.apache.geronimo.arthur.impl.nativeimage.benchmark.Benchmark;
+import org.apache.geronimo.arthur.impl.nativeimage.benchmark.BenchmarkResult;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Measures the startup time (to exit or to an output marker), the peak RSS and the CPU time of the native binary
+ * and optionally of the same main on the JVM.
+ */
+@Mojo(name = "benchmark", requiresDependencyResolution = RUNTIME, threadSafe = true)
+public class BenchmarkMojo extends ArthurMojo {
+    /**
+     * The binary to benchmark, it defaults on native-image output if done before in the same execution.
+     */
+    @Parameter(property = "arthur.benchmark.binary")
+    private File binary;
+
+    /**
+     * When native-image built several `targets`, the classifier of the binary to benchmark.
+     * It is not needed when a single binary was built.
+     */
+    @Parameter(property = "arthur.benchmark.classifier")
+    private String classifier;
+
+    /**
+     * Arguments passed to the binary (and the JVM main).
+     */
+    @Parameter(property = "arthur.benchmark.arguments")
+    private List<String> arguments;
+
+    /**
+     * Number of measured runs.
+     */
+    @Parameter(property = "arthur.benchmark.iterations", defaultValue = "10")
+    private int iterations;
+
+    /**
+     * Number of runs ignored before the measured ones.
+     */
+    @Parameter(property = "arthur.benchmark.warmup", defaultValue = "1")
+    private int warmup;
+
+    /**
+     * If set, a run ends when this text is found in the output (for servers, typically the "started" log line).
+     * Otherwise a run ends when the process exits.
+     */
+    @Parameter(property = "arthur.benchmark.marker")
+    private String marker;
+
+    /**
+     * Maximum duration of a run in seconds.
+     */
+    @Parameter(property = "arthur.benchmark.timeout", defaultValue = "60")
+    private long timeout;
+
+    /**
+     * Interval in milliseconds between two samples of the process peak RSS and CPU time.
+     */
+    @Parameter(property = "arthur.benchmark.samplingInterval", defaultValue = "10")
+    private long samplingInterval;
+
+    /**
+     * Should the same main be benchmarked on the JVM (with the runtime classpath of the project) to compare.
+     */
+    @Parameter(property = "arthur.benchmark.compareWithJvm", defaultValue = "false")
+    private boolean compareWithJvm;
+
+    /**
+     * Main to run on the JVM when `compareWithJvm` is true.
+     */
+    @Parameter(property = "arthur.main")
+    private String main;
+
+    /**
+     * JVM options used when `compareWithJvm` is true.
+     */
+    @Parameter(property = "arthur.benchmark.jvmOptions")
+    private List<String> jvmOptions;
+
+    /**
+     * Where to write the benchmark results (JSON).
+     */
+    @Parameter(property = "arthur.benchmark.report", defaultValue = "${project.build.directory}/arthur_workdir/benchmark.json")
+    private File report;
+
+    /**
+     * If set, the build fails when the median time to exit/marker of the binary (in milliseconds) is greater.
+     */
+    @Parameter(property = "arthur.benchmark.maxWallClock")
+    private Double maxWallClock;
+
+    /**
+     * If set, the build fails when the median peak RSS of the binary (in megabytes) is greater.
+     */
+    @Parameter(property = "arthur.benchmark.maxPeakRss")
+    private Double maxPeakRss;
+
+    /**
+     * If set, the build fails when the median CPU time of the binary (in milliseconds) is greater.
+     */
+    @Parameter(property = "arthur.benchmark.maxCpuTime")
+    private Double maxCpuTime;
+
+    /**
+     * A previous benchmark report (JSON written by this goal) the binary is compared to with `maxRegression`.
+     * If the file does not exist (first build) the comparison is skipped.
+     */
+    @Parameter(property = "arthur.benchmark.baselineReport")
+    private File baselineReport;
+
+    /**
+     * If set, the build fails when the median time, peak RSS or CPU time of the binary is more than
+     * this percentage above the same metric in `baselineReport`.
+     */
+    @Parameter(property = "arthur.benchmark.maxRegression")
+    private Double maxRegression;
+
+    /**
+     * If set, the build fails when the median time, peak RSS or CPU time of the binary divided by the JVM one
+     * (`compareWithJvm` must be true) is greater than this ratio.
+     */
+    @Parameter(property = "arthur.benchmark.maxJvmRatio")
+    private Double maxJvmRatio;
+
+    /**
+     * Skip execution.
+     */
+    @Parameter(property = "arthur.benchmark.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() {
+        if (skip) {
+            getLog().info("Skipping execution as requested");
+            return;
+        }
+        if (maxJvmRatio != null && !compareWithJvm) {
+            throw new IllegalArgumentException("maxJvmRatio requires compareWithJvm to be true");
+        }
+        if (maxRegression != null && baselineReport == null) {
+            throw new IllegalArgumentException("maxRegression requires a baselineReport");
+        }
+
+        final Path binaryPath = ofNullable(binary).map(File::toPath).orElseGet(this::findBinary);
+        final Benchmark benchmark = new Benchmark(Benchmark.BenchmarkConfiguration.builder()
+                .iterations(iterations)
+                .warmup(warmup)
+                .marker(marker)
+                .timeout(timeout)
+                .samplingInterval(samplingInterval)
+                .workingDirectory(project.getBasedir().toPath())
+                .build());
+
+        final Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        final List<String> nativeCommand = new ArrayList<>();
+        nativeCommand.add(binaryPath.toAbsolutePath().toString());
+        ofNullable(arguments).ifPresent(nativeCommand::addAll);
+        results.put("native", benchmark.run("native", nativeCommand));
+        if (compareWithJvm) {
+            results.put("jvm", benchmark.run("jvm", createJvmCommand()));
+        }
+
+        // read before writing the report since the baseline can be the previous report
+        final BenchmarkResult baseline = maxRegression != null ? readBaseline() : null;
+        results.values().forEach(this::onResult);
+        writeReport(results);
+        checkThresholds(results.get("native"), results.get("jvm"), baseline);
+    }
+
+    // native-image publishes binary.path for a single binary and binary.<classifier>.path for targets
+    private Path findBinary() {
+        final Properties properties = project.getProperties();
+        if (classifier != null) {
+            return Paths.get(requireNonNull(
+                    properties.getProperty(propertiesPrefix + "binary." + classifier + ".path"),
+                    "No binary path found for classifier '" + classifier + "', ensure to run native-image before or set binary"));
+        }
+        final String single = properties.getProperty(propertiesPrefix + "binary.path");
+        if (single != null) {
+            return Paths.get(single);
+        }
+        final String prefix = propertiesPrefix + "binary.";
+        final List<String> classifiers = properties.stringPropertyNames().stream()
+                .filter(it -> it.startsWith(prefix) && it.endsWith(".path") && it.length() > prefix.length() + ".path".length())
+                .map(it -> it.substring(prefix.length(), it.length() - ".path".length()))
+                .sorted()
+                .collect(toList());
+        if (classifiers.isEmpty()) {
+            throw new IllegalArgumentException("No binary path found, ensure to run native-image before or set binary");
+        }
+        if (classifiers.size() > 1) {
+            throw new IllegalArgumentException("Several binaries were built " + classifiers + ", set classifier or binary");
+        }
+        return Paths.get(properties.getProperty(prefix + classifiers.get(0) + ".path"));
+    }
+
+    private List<String> createJvmCommand() {
+        if (main == null) {
+            throw new IllegalArgumentException("No main set, it is required to benchmark the JVM");
+        }
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        ofNullable(jvmOptions).ifPresent(command::addAll);
+        command.add("-cp");
+        try {
+            command.add(String.join(File.pathSeparator, project.getRuntimeClasspathElements()));
+        } catch (final DependencyResolutionRequiredException e) {
+            throw new IllegalStateException(e);
+        }
+        command.add(main);
+        ofNullable(arguments).ifPresent(command::addAll);
+        return command;
+    }
+
+    private void onResult(final BenchmarkResult result) {
+        getLog().info(String.format("[%s] time=%sms, peak RSS=%sMB, CPU=%sms (median of %d runs)",
+                result.getName(), format(result.getWallClock()),
+                format(result.getPeakRss() == null ? null : result.getPeakRss() / 1024), format(result.getCpuTime()),
+                result.getRuns().size()));
+        if (propertiesPrefix != null) {
+            final Properties properties = project.getProperties();
+            final String prefix = propertiesPrefix + "benchmark." + result.getName() + '.';
+            ofNullable(result.getWallClock()).ifPresent(v -> properties.setProperty(prefix + "wallClock", Double.toString(v)));
+            ofNullable(result.getPeakRss()).ifPresent(v -> properties.setProperty(prefix + "peakRss", Double.toString(v)));
+            ofNullable(result.getCpuTime()).ifPresent(v -> properties.setProperty(prefix + "cpuTime", Double.toString(v)));
+        }
+    }
+
+    private void writeReport(final Map<String, BenchmarkResult> results) {
+        final Path path = report.toPath();
+        try {
+            if (path.getParent() != null && !Files.exists(path.getParent())) {
+                Files.createDirectories(path.getParent());
+            }
+            try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig()
+                    .setProperty("johnzon.cdi.activated", false)
+                    .withFormatting(true));
+                 final Writer writer = Files.newBufferedWriter(path)) {
+                jsonb.toJson(results, writer);
+            }
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+        getLog().info("Benchmark report written in '" + path + "'");
+    }
+
+    private BenchmarkResult readBaseline() {
+        final Path path = baselineReport.toPath();
+        if (!Files.exists(path)) {
+            getLog().warn("No baseline report '" + path + "', skipping regression check");
+            return null;
+        }
+        final Type type = new HashMap<String, BenchmarkResult>() {
+        }.getClass().getGenericSuperclass();
+        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.cdi.activated", false));
+             final Reader reader = Files.newBufferedReader(path)) {
+            final Map<String, BenchmarkResult> results = jsonb.fromJson(reader, type);
+            return requireNonNull(results.get("native"), "No native result in '" + path + "'");
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkThresholds(final BenchmarkResult result, final BenchmarkResult jvm, final BenchmarkResult baseline) {
+        final List<String> errors = new ArrayList<>();
+        final Map<String, Function<BenchmarkResult, Double>> metrics = new LinkedHashMap<>();
+        metrics.put("time", BenchmarkResult::getWallClock);
+        metrics.put("peak RSS", it -> it.getPeakRss() == null ? null : it.getPeakRss() / 1024);
+        metrics.put("CPU time", BenchmarkResult::getCpuTime);
+        final Map<String, Double> maximums = new HashMap<>();
+        maximums.put("time", maxWallClock);
+        maximums.put("peak RSS", maxPeakRss);
+        maximums.put("CPU time", maxCpuTime);
+        metrics.forEach((name, accessor) -> {
+            final Double value = accessor.apply(result);
+            final Double max = maximums.get(name);
+            if (max != null) {
+                if (value == null) {
+                    errors.add(name + " was not measured (process too short for /proc sampling or not on Linux), can't check max " + max);
+                } else if (value > max) {
+                    errors.add(name + " " + format(value) + " > " + max);
+                }
+            }
+            if (jvm != null && maxJvmRatio != null) {
+                checkRatio(errors, name, value, accessor.apply(jvm), "JVM", maxJvmRatio);
+            }
+            if (baseline != null) {
+                checkRatio(errors, name, value, accessor.apply(baseline), "baseline", 1 + maxRegression / 100);
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Benchmark thresholds exceeded: " + String.join(", ", errors));
+        }
+    }
+
+    private void checkRatio(final List<String> errors, final String name, final Double value, final Double reference,
+                            final String referenceName, final double maxRatio) {
+        if (value == null || reference == null || reference <= 0) {
+            errors.add(name + " not measured for the binary or the " + referenceName + ", can't compare them");
+        } else if (value / reference > maxRatio) {
+            errors.add(name + " " + format(value) + " is " + format(value / reference) + "x the " + referenceName +
+                    " one (" + format(reference) + "), max is " + format(maxRatio) + "x");
+        }
+    }
+
+    private String format(final Double value) {
+        return value == null ? "n/a" : String.format("%.2f", value);
+    }
+}
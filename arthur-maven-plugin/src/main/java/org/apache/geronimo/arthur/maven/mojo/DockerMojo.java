@@ -16,9 +16,16 @@
  */
 package org.apache.geronimo.arthur.maven.mojo;
 
+import static java.util.Collections.emptyMap;
+
+import java.io.IOException;
+import java.security.DigestException;
+
 import com.google.cloud.tools.jib.api.Containerizer;
 import com.google.cloud.tools.jib.api.DockerDaemonImage;
+import com.google.cloud.tools.jib.api.ImageReference;
 import com.google.cloud.tools.jib.api.InvalidImageReferenceException;
+import com.google.cloud.tools.jib.docker.DockerClient;
 import org.apache.maven.plugins.annotations.Mojo;
 
 /**
@@ -31,4 +38,22 @@ public class DockerMojo extends JibMojo {
     protected Containerizer createContainer() throws InvalidImageReferenceException {
         return Containerizer.to(DockerDaemonImage.named(this.to));
     }
+
+    @Override
+    protected boolean isUpToDate(final String imageId, final String digest) {
+        if (!DockerClient.isDefaultDockerInstalled()) {
+            return false;
+        }
+        try {
+            return imageId.equals(new DockerClient(DockerClient.DEFAULT_DOCKER_CLIENT, emptyMap())
+                    .inspect(ImageReference.parse(to))
+                    .getImageId().getHash());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (final IOException | DigestException | InvalidImageReferenceException e) { // image was removed
+            getLog().debug(e.getMessage(), e);
+            return false;
+        }
+    }
 }
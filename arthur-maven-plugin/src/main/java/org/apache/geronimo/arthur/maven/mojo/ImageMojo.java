@@ -17,16 +17,19 @@
 
 import static java.util.Optional.ofNullable;
 
+import java.io.IOException;
 import java.util.Optional;
 
 import com.google.cloud.tools.jib.api.Containerizer;
+import com.google.cloud.tools.jib.api.Credential;
 import com.google.cloud.tools.jib.api.ImageReference;
 import com.google.cloud.tools.jib.api.InvalidImageReferenceException;
+import com.google.cloud.tools.jib.api.RegistryException;
 import com.google.cloud.tools.jib.api.RegistryImage;
-import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.settings.Server;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecrypter;
 import org.apache.maven.settings.crypto.SettingsDecryptionResult;
@@ -46,9 +49,6 @@ public class ImageMojo extends JibMojo {
     @Component
     private SettingsDecrypter settingsDecrypter;
 
-    @Parameter(defaultValue = "${session}", readonly = true)
-    private MavenSession session;
-
     @Override
     protected Containerizer createContainer() throws InvalidImageReferenceException {
         final ImageReference reference = ImageReference.parse(to);
@@ -57,13 +57,34 @@ public class ImageMojo extends JibMojo {
         return Containerizer.to(image);
     }
 
+    // the remote tag must still reference the previously pushed manifest
+    @Override
+    protected boolean isUpToDate(final String imageId, final String digest) {
+        if (offline) {
+            return false;
+        }
+        try {
+            final ImageReference reference = ImageReference.parse(to);
+            final Credential credential = findServer(reference)
+                    .map(server -> Credential.from(server.getUsername(), server.getPassword()))
+                    .orElse(null);
+            return digest.equals(fetchManifestDigest(reference, credential));
+        } catch (final IOException | RegistryException | InvalidImageReferenceException e) { // tag was removed
+            getLog().debug(e.getMessage(), e);
+            return false;
+        }
+    }
+
     private void registerCredentials(final ImageReference reference, final RegistryImage registryImage) {
-        ofNullable(serverId)
+        findServer(reference).ifPresent(server -> registryImage.addCredential(server.getUsername(), server.getPassword()));
+    }
+
+    private Optional<Server> findServer(final ImageReference reference) {
+        return ofNullable(serverId)
             .map(Optional::of)
             .orElseGet(() -> ofNullable(reference.getRegistry()))
             .map(id -> session.getSettings().getServer(id))
             .map(it -> settingsDecrypter.decrypt(new DefaultSettingsDecryptionRequest(it)))
-            .map(SettingsDecryptionResult::getServer)
-            .ifPresent(server -> registryImage.addCredential(server.getUsername(), server.getPassword()));
+            .map(SettingsDecryptionResult::getServer);
     }
 }
@@ -17,6 +17,8 @@
 package org.apache.geronimo.arthur.maven.mojo;
 
 import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.Locale.ROOT;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -31,14 +33,21 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -47,6 +56,7 @@ import java.util.stream.Stream;
 import com.google.cloud.tools.jib.api.AbsoluteUnixPath;
 import com.google.cloud.tools.jib.api.CacheDirectoryCreationException;
 import com.google.cloud.tools.jib.api.Containerizer;
+import com.google.cloud.tools.jib.api.Credential;
 import com.google.cloud.tools.jib.api.FilePermissions;
 import com.google.cloud.tools.jib.api.ImageReference;
 import com.google.cloud.tools.jib.api.InvalidImageReferenceException;
@@ -58,7 +68,21 @@ import com.google.cloud.tools.jib.api.LayerEntry;
 import com.google.cloud.tools.jib.api.LogEvent;
 import com.google.cloud.tools.jib.api.Ports;
 import com.google.cloud.tools.jib.api.RegistryException;
+import com.google.cloud.tools.jib.event.EventHandlers;
+import com.google.cloud.tools.jib.event.events.TimerEvent;
+import com.google.cloud.tools.jib.http.Authorization;
+import com.google.cloud.tools.jib.registry.RegistryAuthenticator;
+import com.google.cloud.tools.jib.registry.RegistryClient;
+import org.apache.geronimo.arthur.impl.nativeimage.elf.DynamicLibraries;
+import org.apache.geronimo.arthur.impl.nativeimage.elf.ElfReader;
+import org.apache.geronimo.arthur.impl.nativeimage.image.ImageBuildState;
+import org.apache.geronimo.arthur.impl.nativeimage.image.ImageInputs;
+import org.apache.geronimo.arthur.impl.nativeimage.image.OtherFilesLayering;
+import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstaller;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.SessionData;
+
+import lombok.Data;
 
 public abstract class JibMojo extends ArthurMojo {
     /**
@@ -79,6 +103,30 @@ public abstract class JibMojo extends ArthurMojo {
     @Parameter(property = "arthur.files")
     private List<File> otherFiles;
 
+    /**
+     * How other files are split in layers when `otherFilesLayers` is not set:
+     * `single` puts them all in the `Others` layer,
+     * `auto` puts configuration files (`.properties`, `.yaml`, `.json`, `.xml`... or under a `conf`, `config` or `etc` folder)
+     * in the `Others` layer and the other files in an `Others-stable` layer under it.
+     */
+    @Parameter(property = "arthur.otherFilesLayering", defaultValue = "single")
+    private String otherFilesLayering;
+
+    /**
+     * With `auto` layering, if positive, files modified in the last `otherFilesStableAge` minutes also go to the `Others` layer.
+     * Note that it makes the layers depend on when the build runs (and a fresh checkout has only recent files).
+     */
+    @Parameter(property = "arthur.otherFilesStableAge", defaultValue = "0")
+    private long otherFilesStableAge;
+
+    /**
+     * Explicit layers for other files, from the least to the most frequently changing one.
+     * Each layer has a `name` and `includes` globs matched against the path in the image (without leading slash),
+     * a file goes to the first matching layer and not matching files go to the `Others` layer (on top).
+     */
+    @Parameter
+    private List<LayerGroup> otherFilesLayers;
+
     /**
      * Program arguments.
      */
@@ -125,7 +173,7 @@ public abstract class JibMojo extends ArthurMojo {
      * Are insecure registries allowed.
      */
     @Parameter(property = "arthur.allowInsecureRegistries", defaultValue = "false")
-    private boolean allowInsecureRegistries;
+    protected boolean allowInsecureRegistries;
 
     /**
      * Where to cache application layers.
@@ -140,11 +188,20 @@ public abstract class JibMojo extends ArthurMojo {
     private File baseLayersCache;
 
     /**
-     * Number of threads used to build.
+     * Number of threads used to build, when greater than 1 a dedicated pool of this size is used.
+     * Jib steps wait for the steps they schedule so it must not be too small.
+     * Otherwise threads are created as needed (all layers are built in parallel).
      */
     @Parameter(property = "arthur.threads", defaultValue = "1")
     private int threads;
 
+    /**
+     * Should the image builds of the Maven session (all modules of a reactor) share the same executor
+     * when `threads` is not set. Its threads are created as needed and die when idle.
+     */
+    @Parameter(property = "arthur.shareExecutor", defaultValue = "true")
+    private boolean shareExecutor;
+
     /**
      * Build timeout in milliseconds if it is using threads > 1.
      */
@@ -171,6 +228,22 @@ public abstract class JibMojo extends ArthurMojo {
     @Parameter(property = "arthur.nativeRootDir", defaultValue = "/native")
     protected String nativeRootDir;
 
+    /**
+     * Should the shared libraries the binary needs (ELF `DT_NEEDED`, transitively) and its dynamic loader be included
+     * in a `Libraries` layer. They are resolved from `librarySearchPaths`, the host library folders then GraalVM.
+     * Value can be `true`, `false` or `auto` which includes them when the binary is dynamically linked
+     * and the base image is `scratch`.
+     */
+    @Parameter(property = "arthur.includeDynamicLibraries", defaultValue = "auto")
+    protected String includeDynamicLibraries;
+
+    /**
+     * When includeDynamicLibraries, additional folders to look libraries into (before host ones).
+     * Libraries found there are put next to the dynamic loader in the image.
+     */
+    @Parameter(property = "arthur.librarySearchPaths")
+    protected List<File> librarySearchPaths;
+
     /**
      * Should cacerts be included.
      */
@@ -183,20 +256,59 @@ public abstract class JibMojo extends ArthurMojo {
     @Parameter(property = "arthur.cacertsDir", defaultValue = "/certificates/cacerts")
     protected String cacertsTarget;
 
+    /**
+     * Skip the image build when its inputs (binary, files, natives, cacerts, base image and image configuration)
+     * did not change since the last build and the previously built image still exists.
+     * A base image tag is resolved to the digest it currently references (not pinned base images are always rebuilt offline).
+     * Inputs digest is stored next to `applicationLayersCache`.
+     */
+    @Parameter(property = "arthur.skipUnchangedImage", defaultValue = "true")
+    private boolean skipUnchangedImage;
+
     protected abstract Containerizer createContainer() throws InvalidImageReferenceException;
 
+    /**
+     * Called when the inputs did not change since the last build to check the image is still there.
+     *
+     * @param imageId the image id of the last build.
+     * @param digest  the image digest of the last build.
+     * @return true if the previously built image can be reused.
+     */
+    protected boolean isUpToDate(final String imageId, final String digest) {
+        return false;
+    }
+
+    /**
+     * Called when the image was built.
+     *
+     * @param creationTime the image creation time.
+     */
+    protected void onBuilt(final Instant creationTime) {
+        // no-op
+    }
+
     @Override
     public void execute() {
-        final JibContainerBuilder prepared = prepare();
+        final List<LayerConfiguration> layers = createLayers();
+        final Instant creationTime = creationTimestamp < 0 ? Instant.now() : Instant.ofEpochMilli(creationTimestamp);
+        final JibContainerBuilder prepared = prepare(layers, creationTime);
+        final Path buildState = applicationLayersCache.toPath().resolveSibling(
+                applicationLayersCache.getName() + '.' + getClass().getSimpleName().replace("Mojo", "").toLowerCase(ROOT) + ".properties");
+        final String inputs = skipUnchangedImage ? computeInputsDigest(layers, resolveBaseImageDigest()) : null;
+        if (inputs != null && isUnchanged(buildState, inputs)) {
+            return;
+        }
         withExecutor(es -> {
             try {
+                final long start = System.nanoTime();
                 final Containerizer containerizer = createContainer();
                 final JibContainer container = prepared.containerize(configure(containerizer, es));
-                if (propertiesPrefix != null) {
-                    project.getProperties().setProperty(propertiesPrefix + "image.imageId", container.getImageId().getHash());
-                    project.getProperties().setProperty(propertiesPrefix + "image.digest", container.getDigest().getHash());
+                onBuilt(creationTime);
+                setImageProperties(container.getImageId().getHash(), container.getDigest().getHash());
+                if (inputs != null) {
+                    storeBuildState(buildState, inputs, container);
                 }
-                getLog().info("Built '" + to + "'");
+                getLog().info("Built '" + to + "' in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
             } catch (final InterruptedException e) {
                 Thread.currentThread().interrupt();
             } catch (final RegistryException | IOException | CacheDirectoryCreationException | ExecutionException | InvalidImageReferenceException e) {
@@ -205,6 +317,103 @@ public abstract class JibMojo extends ArthurMojo {
         });
     }
 
+    private void setImageProperties(final String imageId, final String digest) {
+        if (propertiesPrefix != null) {
+            project.getProperties().setProperty(propertiesPrefix + "image.imageId", imageId);
+            project.getProperties().setProperty(propertiesPrefix + "image.digest", digest);
+        }
+    }
+
+    private boolean isUnchanged(final Path buildState, final String inputs) {
+        final ImageBuildState state;
+        try {
+            state = ImageBuildState.load(buildState);
+        } catch (final IOException e) {
+            getLog().warn("Can't read '" + buildState + "': " + e.getMessage());
+            return false;
+        }
+        if (state == null || !state.isSameBuild(inputs, to)) {
+            return false;
+        }
+        if (!isUpToDate(state.getImageId(), state.getDigest())) {
+            getLog().info("Image '" + to + "' inputs did not change but previous image was not found, rebuilding it");
+            return false;
+        }
+        setImageProperties(state.getImageId(), state.getDigest());
+        getLog().info("Image '" + to + "' is up to date (inputs did not change), skipping");
+        return true;
+    }
+
+    private void storeBuildState(final Path buildState, final String inputs, final JibContainer container) {
+        try {
+            new ImageBuildState(inputs, to, container.getImageId().getHash(), container.getDigest().getHash()).store(buildState);
+        } catch (final IOException e) {
+            getLog().warn("Can't store '" + buildState + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param reference the image to look up.
+     * @param credential the registry credential if any.
+     * @return the digest of the manifest the reference tag points to in the registry.
+     */
+    protected String fetchManifestDigest(final ImageReference reference, final Credential credential)
+            throws IOException, RegistryException {
+        final RegistryClient.Factory factory = RegistryClient.factory(
+                EventHandlers.NONE, reference.getRegistry(), reference.getRepository())
+                .setAllowInsecureRegistries(allowInsecureRegistries);
+        final Optional<RegistryAuthenticator> authenticator = factory.newRegistryClient().getRegistryAuthenticator();
+        if (authenticator.isPresent()) {
+            factory.setAuthorization(authenticator.get().authenticatePull(credential));
+        } else if (credential != null) {
+            factory.setAuthorization(Authorization.fromBasicCredentials(credential.getUsername(), credential.getPassword()));
+        }
+        return factory.newRegistryClient().pullManifest(reference.getTag()).getDigest().getHash();
+    }
+
+    // a tag (alpine:3, distroless/base:latest) can move so the image it currently references is part of the inputs,
+    // null means it can't be resolved and the up to date check must be skipped
+    private String resolveBaseImageDigest() {
+        final ImageReference reference;
+        try {
+            reference = ImageReference.parse(from);
+        } catch (final InvalidImageReferenceException e) {
+            throw new IllegalArgumentException(e);
+        }
+        if (reference.isScratch() || reference.isTagDigest()) {
+            return from;
+        }
+        if (offline) {
+            getLog().info("Can't resolve base image '" + from + "' offline, image will be rebuilt");
+            return null;
+        }
+        try {
+            return fetchManifestDigest(reference, null);
+        } catch (final IOException | RegistryException e) {
+            getLog().info("Can't resolve base image '" + from + "' (" + e.getMessage() + "), image will be rebuilt");
+            return null;
+        }
+    }
+
+    // layer entries (content and metadata), base image and image configuration
+    private String computeInputsDigest(final List<LayerConfiguration> layers, final String baseImageDigest) {
+        if (baseImageDigest == null) {
+            return null;
+        }
+        final ImageInputs inputs = new ImageInputs();
+        Stream.of(from, baseImageDigest, ports, environment, labels, programArguments, creationTimestamp, entrypoint,
+                includeNatives, nativeRootDir, includeCacerts, cacertsTarget, includeDynamicLibraries, librarySearchPaths)
+                .forEach(inputs::value);
+        for (final LayerConfiguration layer : layers) {
+            inputs.value(layer.getName());
+            for (final LayerEntry entry : layer.getLayerEntries()) {
+                inputs.entry(entry.getSourceFile(), entry.getExtractionPath().toString(),
+                        entry.getPermissions().toOctalString(), entry.getModificationTime());
+            }
+        }
+        return inputs.digest();
+    }
+
     private void withExecutor(final Consumer<ExecutorService> consumer) {
         if (threads > 1) {
             final ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
@@ -225,11 +434,37 @@ public abstract class JibMojo extends ArthurMojo {
                     Thread.currentThread().interrupt();
                 }
             }
+        } else if (shareExecutor && repositorySystemSession != null) {
+            consumer.accept(getSharedExecutor());
         } else {
-            consumer.accept(null);
+            consumer.accept(null); // jib creates its own cached pool
         }
     }
 
+    // stored in the session data to be shared by the modules, threads are daemons and idle ones die
+    // so no need to shut it down. Jib steps block waiting for the steps they scheduled on the same executor
+    // (pushing the image waits for the layer pushes) so, as Jib default one, it must not be bounded.
+    private ExecutorService getSharedExecutor() {
+        final SessionData data = repositorySystemSession.getData();
+        final String key = JibMojo.class.getName() + ".executor";
+        final ExecutorService existing = (ExecutorService) data.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadPoolExecutor created = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<>(), r -> {
+            final Thread thread = new Thread(r, JibMojo.class.getName() + "-shared-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (data.set(key, null, created)) {
+            return created;
+        }
+        created.shutdown(); // concurrent module
+        return (ExecutorService) data.get(key);
+    }
+
     private Containerizer configure(final Containerizer to, final ExecutorService executorService) {
         to.setAlwaysCacheBaseImage(enableCache);
         to.setAllowInsecureRegistries(allowInsecureRegistries);
@@ -238,6 +473,18 @@ public abstract class JibMojo extends ArthurMojo {
         to.setOfflineMode(offline);
         to.setToolName("Arthur " + getClass().getSimpleName().replace("Mojo", ""));
         to.setExecutorService(executorService);
+        to.addEventHandler(TimerEvent.class, event -> {
+            if (event.getState() != TimerEvent.State.FINISHED) {
+                return;
+            }
+            final String message = event.getDescription() + " took " + event.getElapsed().toMillis() + "ms";
+            final String description = event.getDescription().toLowerCase(ROOT);
+            if (description.contains("layer") || description.contains("blob")) {
+                getLog().info(message);
+            } else {
+                getLog().debug(message);
+            }
+        });
         to.addEventHandler(LogEvent.class, event -> {
             switch (event.getLevel()) {
                 case INFO:
@@ -260,7 +507,7 @@ public abstract class JibMojo extends ArthurMojo {
         return to;
     }
 
-    private JibContainerBuilder prepare() {
+    private JibContainerBuilder prepare(final List<LayerConfiguration> layers, final Instant creationTime) {
         try {
             final JibContainerBuilder from = Jib.from(ImageReference.parse(this.from));
             if (ports != null) {
@@ -275,54 +522,122 @@ public abstract class JibMojo extends ArthurMojo {
             if (programArguments != null) {
                 from.setProgramArguments(programArguments);
             }
-            from.setCreationTime(creationTimestamp < 0 ? Instant.now() : Instant.ofEpochMilli(creationTimestamp));
-
-            final boolean hasNatives = includeNatives != null && !includeNatives.isEmpty() && !singletonList("false").equals(includeNatives);
-            if (entrypoint == null || entrypoint.size() < 1) {
-                throw new IllegalArgumentException("No entrypoint set");
-            }
+            from.setCreationTime(creationTime);
             from.setEntrypoint(Stream.concat(Stream.concat(
                     entrypoint.stream(),
-                    hasNatives ? Stream.of("-Djava.library.path=" + nativeRootDir) : Stream.empty()),
+                    hasNatives() ? Stream.of("-Djava.library.path=" + nativeRootDir) : Stream.empty()),
                     includeCacerts ? Stream.of("-Djavax.net.ssl.trustStore=" + cacertsTarget) : Stream.empty())
                     .collect(toList()));
 
+            from.setLayers(layers);
+
+            return from;
+        } catch (final InvalidImageReferenceException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<LayerConfiguration> createLayers() {
+        try {
+            if (entrypoint == null || entrypoint.size() < 1) {
+                throw new IllegalArgumentException("No entrypoint set");
+            }
             final Path source = ofNullable(binarySource)
                     .map(File::toPath)
                     .orElseGet(() -> Paths.get(requireNonNull(
                             project.getProperties().getProperty(propertiesPrefix + "binary.path"),
                             "No binary path found, ensure to run native-image before or set entrypoint")));
-            from.setLayers(Stream.concat(Stream.concat(Stream.concat(
-                    includeCacerts ?
-                            Stream.of(findCertificates()) : Stream.empty(),
-                    hasNatives ?
-                            Stream.of(findNatives()) : Stream.empty()),
-                    otherFiles != null && !otherFiles.isEmpty() ?
-                            Stream.of(createOthersLayer()) :
-                            Stream.empty()),
-                    Stream.of(LayerConfiguration.builder()
-                            .setName("Binary")
-                            .addEntry(new LayerEntry(
-                                    source, AbsoluteUnixPath.get(entrypoint.iterator().next()), FilePermissions.fromOctalString("755"),
-                                    getTimestamp(source)))
-                            .build()))
-                    .collect(toList()));
-
-            return from;
-        } catch (final InvalidImageReferenceException | IOException e) {
+            final List<LayerConfiguration> layers = new ArrayList<>();
+            if (includeCacerts) {
+                layers.add(findCertificates());
+            }
+            if (hasNatives()) {
+                layers.add(findNatives());
+            }
+            if (isIncludeDynamicLibraries(source)) {
+                layers.add(createLibrariesLayer(source));
+            }
+            if (otherFiles != null && !otherFiles.isEmpty()) {
+                layers.addAll(createOthersLayers());
+            }
+            layers.add(LayerConfiguration.builder()
+                    .setName("Binary")
+                    .addEntry(new LayerEntry(
+                            source, AbsoluteUnixPath.get(entrypoint.iterator().next()), FilePermissions.fromOctalString("755"),
+                            getTimestamp(source)))
+                    .build());
+            return layers;
+        } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
     }
 
-    private Path findHome() {
+    private boolean isIncludeDynamicLibraries(final Path binary) {
+        if ("auto".equals(includeDynamicLibraries)) { // a dynamic binary can't run without its libraries on scratch
+            return "scratch".equals(from) && ElfReader.isElf(binary) && ElfReader.read(binary).getInterpreter() != null;
+        }
+        return Boolean.parseBoolean(includeDynamicLibraries);
+    }
+
+    // libraries found in default host folders keep their location, others go next to the loader (always searched)
+    private LayerConfiguration createLibrariesLayer(final Path binary) throws IOException {
+        final List<Path> hostPaths = DynamicLibraries.defaultSearchPaths(null);
+        final List<Path> searchPaths = Stream.concat(
+                librarySearchPaths == null ? Stream.empty() : librarySearchPaths.stream().map(File::toPath),
+                hostPaths.stream())
+                .collect(toList());
+        DynamicLibraries.Resolution resolution = new DynamicLibraries(searchPaths).resolve(binary);
+        if (!resolution.getMissing().isEmpty()) {
+            getLog().info("Looking for " + resolution.getMissing() + " in GraalVM");
+            final Path home = findHome("jre/lib/*/*.so", "lib/*.so");
+            resolution = new DynamicLibraries(Stream.concat(
+                    searchPaths.stream(), DynamicLibraries.defaultSearchPaths(home).stream().filter(it -> it.startsWith(home)))
+                    .collect(toList()))
+                    .resolve(binary);
+            if (!resolution.getMissing().isEmpty()) {
+                throw new IllegalArgumentException("Can't find " + resolution.getMissing() + " needed by '" + binary + "', " +
+                        "set librarySearchPaths or includeDynamicLibraries=false");
+            }
+        }
+
+        final AbsoluteUnixPath loaderFolder = resolution.getInterpreter() != null ?
+                AbsoluteUnixPath.get(resolution.getInterpreter().getParent().toString()) :
+                AbsoluteUnixPath.get("/lib");
+        final Map<AbsoluteUnixPath, Path> entries = new TreeMap<>(comparing(AbsoluteUnixPath::toString));
+        if (resolution.getInterpreter() != null) {
+            entries.put(AbsoluteUnixPath.get(resolution.getInterpreter().toString()), resolution.getInterpreter());
+        }
+        for (final Map.Entry<String, Path> library : resolution.getLibraries().entrySet()) {
+            final Path folder = library.getValue().getParent();
+            entries.putIfAbsent(
+                    hostPaths.contains(folder) ?
+                            AbsoluteUnixPath.get(folder.toString()).resolve(library.getKey()) :
+                            loaderFolder.resolve(library.getKey()),
+                    library.getValue());
+        }
+        getLog().info("Including dynamic libraries " + entries.keySet());
+        final LayerConfiguration.Builder builder = LayerConfiguration.builder().setName("Libraries");
+        for (final Map.Entry<AbsoluteUnixPath, Path> entry : entries.entrySet()) {
+            builder.addEntry(entry.getValue(), entry.getKey(), FilePermissions.fromOctalString("755"), getTimestamp(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    private boolean hasNatives() {
+        return includeNatives != null && !includeNatives.isEmpty() && !singletonList("false").equals(includeNatives);
+    }
+
+    private Path findHome(final String... required) {
         if (nativeImage == null) {
-            return createInstaller().install();
+            final SdkmanGraalVMInstaller installer = createInstaller();
+            installer.install();
+            return installer.ensureExtracted(required);
         }
         return Paths.get(nativeImage).getParent().getParent();
     }
 
     private LayerConfiguration findCertificates() {
-        final Path home = findHome();
+        final Path home = findHome("jre/lib/security/cacerts", "lib/security/cacerts");
         getLog().info("Using certificates from '" + home + "'");
         final Path cacerts = home.resolve("jre/lib/security/cacerts");
         if (!Files.exists(cacerts)) {
@@ -335,7 +650,7 @@ public abstract class JibMojo extends ArthurMojo {
     }
 
     private LayerConfiguration findNatives() {
-        final Path home = findHome();
+        final Path home = findHome("jre/lib/*.lib", "jre/lib/*/*.so", "lib/*.so");
         getLog().info("Using natives from '" + home + "'");
         final Path jreLib = home.resolve("jre/lib");
         final boolean isWin = Files.exists(jreLib.resolve("java.lib"));
@@ -379,32 +694,51 @@ public abstract class JibMojo extends ArthurMojo {
         return creationTimestamp < 0 ? Files.getLastModifiedTime(source).toInstant() : Instant.ofEpochMilli(creationTimestamp);
     }
 
-    private LayerConfiguration createOthersLayer() {
-        final LayerConfiguration.Builder builder = LayerConfiguration.builder().setName("Others");
-        otherFiles.stream().map(File::toPath).forEach(f -> {
-            final AbsoluteUnixPath containerPath = AbsoluteUnixPath.get(project.getBasedir().toPath().relativize(f).toString());
-            if (containerPath.toString().contains("..")) {
+    private List<LayerConfiguration> createOthersLayers() {
+        final Map<String, List<String>> groups = new LinkedHashMap<>();
+        if (otherFilesLayers != null) {
+            for (final LayerGroup group : otherFilesLayers) {
+                if (group.getName() == null || group.getIncludes() == null || group.getIncludes().isEmpty()) {
+                    throw new IllegalArgumentException("Other files layers need a name and includes: " + group);
+                }
+                groups.put(group.getName(), group.getIncludes());
+            }
+        }
+        final OtherFilesLayering layering = new OtherFilesLayering(otherFilesLayering, groups,
+                otherFilesStableAge > 0 ? Instant.now().minus(otherFilesStableAge, ChronoUnit.MINUTES) : null);
+        final Map<String, LayerConfiguration.Builder> builders = new LinkedHashMap<>();
+        layering.getLayers().forEach(name -> builders.put(name, LayerConfiguration.builder().setName(name)));
+
+        final Path basedir = project.getBasedir().toPath();
+        otherFiles.stream().map(File::toPath).forEach(root -> {
+            if (basedir.relativize(root).toString().contains("..")) {
                 throw new IllegalArgumentException("You can only include files included in basedir");
             }
-            try {
-                if (Files.isDirectory(f)) {
-                    builder.addEntryRecursive(
-                            f, containerPath,
-                            (l, c) -> FilePermissions.DEFAULT_FILE_PERMISSIONS,
-                            (l, c) -> {
-                                try {
-                                    return getTimestamp(l);
-                                } catch (final IOException e) {
-                                    throw new IllegalStateException(e);
-                                }
-                            });
-                } else {
-                    builder.addEntry(f, containerPath, FilePermissions.DEFAULT_FILE_PERMISSIONS, getTimestamp(f));
-                }
+            try (final Stream<Path> files = Files.walk(root)) {
+                files.forEach(file -> {
+                    try {
+                        final String relative = basedir.relativize(file).toString().replace(File.separatorChar, '/');
+                        builders.get(layering.layerOf(file, relative)).addEntry(
+                                file, AbsoluteUnixPath.get('/' + relative),
+                                Files.isDirectory(file) ? FilePermissions.DEFAULT_FOLDER_PERMISSIONS : FilePermissions.DEFAULT_FILE_PERMISSIONS,
+                                getTimestamp(file));
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
             } catch (final IOException e) {
                 throw new IllegalStateException(e);
             }
         });
-        return builder.build();
+        return builders.values().stream()
+                .map(LayerConfiguration.Builder::build)
+                .filter(layer -> !layer.getLayerEntries().isEmpty())
+                .collect(toList());
+    }
+
+    @Data
+    public static class LayerGroup {
+        private String name;
+        private List<String> includes;
     }
 }
@@ -17,6 +17,9 @@
 package org.apache.geronimo.arthur.maven.mojo;
 
 import static java.lang.ClassLoader.getSystemClassLoader;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Locale.ROOT;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -29,19 +32,27 @@ import static org.apache.xbean.finder.archive.ClasspathArchive.archive;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -54,8 +65,14 @@ import javax.json.bind.config.PropertyOrderStrategy;
 
 import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageConfiguration;
 import org.apache.geronimo.arthur.impl.nativeimage.ArthurNativeImageExecutor;
+import org.apache.geronimo.arthur.impl.nativeimage.NativeImageTarget;
+import org.apache.geronimo.arthur.impl.nativeimage.generator.ConfigurationGenerator;
 import org.apache.geronimo.arthur.impl.nativeimage.generator.extension.AnnotationExtension;
 import org.apache.geronimo.arthur.impl.nativeimage.installer.SdkmanGraalVMInstaller;
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.ImageSizeAnalyzer;
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.ImageSizeReport;
+import org.apache.geronimo.arthur.impl.nativeimage.metrics.NativeImageMetrics;
+import org.apache.geronimo.arthur.impl.nativeimage.pgo.PgoConfiguration;
 import org.apache.geronimo.arthur.maven.extension.MavenArthurExtension;
 import org.apache.geronimo.arthur.spi.ArthurExtension;
 import org.apache.geronimo.arthur.spi.model.ClassReflectionModel;
@@ -81,7 +98,10 @@ import org.apache.xbean.finder.archive.CompositeArchive;
 import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.graph.DependencyVisitor;
 
+import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.ToString;
 
 /**
  * Generates a native binary from current project.
@@ -92,6 +112,57 @@ public class NativeImageMojo extends ArthurMojo {
     // ArthurNativeImageConfiguration
     //
 
+    /**
+     * native-image build heap (`-J-Xmx`), for example `6g`. If not set and `autoSizing` is true it is computed.
+     */
+    @Parameter(property = "arthur.maxHeap")
+    private String maxHeap;
+
+    /**
+     * Number of processors the native-image JVM sees (`-J-XX:ActiveProcessorCount`).
+     * If not set and `autoSizing` is true it is computed.
+     */
+    @Parameter(property = "arthur.activeProcessorCount")
+    private Integer activeProcessorCount;
+
+    /**
+     * Number of threads used by native-image analysis and compilation (`-H:NumberOfThreads`).
+     * If not set and `autoSizing` is true it is computed.
+     */
+    @Parameter(property = "arthur.numberOfThreads")
+    private Integer numberOfThreads;
+
+    /**
+     * Should `maxHeap`, `activeProcessorCount` and `numberOfThreads` be computed from the available memory and CPU
+     * (respecting container cgroup limits) when not explicitly set.
+     */
+    @Parameter(property = "arthur.autoSizing", defaultValue = "false")
+    private boolean autoSizing;
+
+    /**
+     * Retries done when native-image fails with an `OutOfMemoryError` or is killed (exit code 137).
+     * Each entry is a retry step with the format `<maxHeap>[:<numberOfThreads>]`, for example `8g:4`.
+     * Succeeding attempt is logged and reported in the metrics.
+     */
+    @Parameter(property = "arthur.outOfMemoryRetries")
+    private List<String> outOfMemoryRetries;
+
+    /**
+     * Maximum number of native-image processes running concurrently in the build JVM (parallel reactor builds).
+     * Processes are also admitted against the available memory (using their max heap), 0 means only the memory is used.
+     * Scanning and configuration generation stay parallel, only the native-image forks are queued.
+     */
+    @Parameter(property = "arthur.maxConcurrentNativeImages", defaultValue = "0")
+    private int maxConcurrentNativeImages;
+
+    /**
+     * Should native-image arguments (classpath, configuration files, ...) be written in an argument file in `workdir`
+     * and native-image be launched with `@<file>`. `auto` uses it when native-image supports it (GraalVM >= 21.1),
+     * other values are `always` and `never`. It keeps the command short for huge classpaths and reproducible from the workdir.
+     */
+    @Parameter(property = "arthur.argFile", defaultValue = "auto")
+    private ArthurNativeImageConfiguration.ArgFileMode argFile;
+
     /**
      * custom native-image arguments.
      */
@@ -208,9 +279,9 @@ public class NativeImageMojo extends ArthurMojo {
     private boolean enableAllSecurityServices;
 
     /**
-     * Which main to compile.
+     * Which main to compile, required if `targets` is not set.
      */
-    @Parameter(property = "arthur.main", required = true)
+    @Parameter(property = "arthur.main")
     private String main;
 
     /**
@@ -219,19 +290,39 @@ public class NativeImageMojo extends ArthurMojo {
     @Parameter(property = "arthur.output", defaultValue = "${project.build.directory}/${project.artifactId}.graal.bin")
     private String output;
 
+    /**
+     * List of binaries to build from the same classpath scanning and configuration generation.
+     * Each target has a `main`, an optional `output` (default to `${project.build.directory}/${project.artifactId}-<classifier>.graal.bin`),
+     * a `classifier` used to attach it (default to the lowercased simple name of the main)
+     * and `customOptions` appended to the shared ones. When set, `main` and `output` are ignored.
+     * native-image processes are launched concurrently, respecting `maxConcurrentNativeImages`.
+     */
+    @Parameter
+    private List<Target> targets;
+
     /**
      * The execution will fork native-image process, should IO be inherited from maven process (recommended).
      */
     @Getter(PROTECTED)
     @Parameter(property = "arthur.inheritIO", defaultValue = "true")
-    private boolean inheritIO;
+    protected boolean inheritIO;
 
     /**
      * Should graal build server be used (a bit like gradle daemon), it is very discouraged to be used cause invalidation is not yet well handled.
+     * Prefer `buildServer` which manages it for you.
      */
     @Parameter(property = "arthur.noServer", defaultValue = "true")
     private boolean noServer;
 
+    /**
+     * Should a native-image build server be used and managed by Arthur: a server session is created per GraalVM and classpath
+     * (paths, sizes and last modified dates) fingerprint, it is reused while it does not change
+     * and killed otherwise. `arthur:server-stop` stops it.
+     * It requires a GraalVM version supporting the build server (`--server-session` option).
+     */
+    @Parameter(property = "arthur.buildServer", defaultValue = "false")
+    private boolean buildServer;
+
     //
     // Other maven injections
     //
@@ -332,6 +423,34 @@ public class NativeImageMojo extends ArthurMojo {
     @Parameter(property = "arthur.attachType", defaultValue = "bin")
     private String attachType;
 
+    /**
+     * Where to write the native-image metrics (phases durations and memory, reachable classes/methods, image size).
+     * These metrics are also set as project properties prefixed with `propertiesPrefix` + `metrics.`.
+     * When captured, the output is forwarded to the build logger (stderr lines as warnings).
+     * Set it to `none` to disable the output capture and inherit the native-image output as before.
+     */
+    @Parameter(property = "arthur.metricsReport", defaultValue = "${project.build.directory}/arthur_workdir/native-image.metrics.json")
+    private String metricsReport;
+
+    /**
+     * Should native-image dump its code and heap breakdown (dashboard) to generate a size report per type, package
+     * and registration origin (extension which registered the type) in `sizeReportDirectory` (JSON and HTML).
+     */
+    @Parameter(property = "arthur.sizeReport", defaultValue = "false")
+    private boolean sizeReport;
+
+    /**
+     * Where size reports are written when `sizeReport` is true.
+     */
+    @Parameter(property = "arthur.sizeReportDirectory", defaultValue = "${project.build.directory}/arthur_workdir/size-report")
+    private File sizeReportDirectory;
+
+    /**
+     * How many entries per category (types, packages, origins) are kept in the size report.
+     */
+    @Parameter(property = "arthur.sizeReportTop", defaultValue = "50")
+    private int sizeReportTop;
+
     /**
      * Properties passed to the extensions if needed.
      */
@@ -381,15 +500,97 @@ public class NativeImageMojo extends ArthurMojo {
             return;
         }
 
+        final List<Target> binaries = getTargets();
+
+        // installing graalvm can be slow (download, extraction, gu install) so it runs while the classpath is scanned
+        final CompletableFuture<String> graalInstallation = nativeImage == null ? installGraalAsync() : null;
+        try {
+            doExecute(binaries, graalInstallation);
+        } finally {
+            if (graalInstallation != null && !graalInstallation.isDone()) { // failure, don't leave a partial installation
+                try {
+                    graalInstallation.join();
+                } catch (final RuntimeException re) {
+                    getLog().debug(re.getMessage(), re);
+                }
+            }
+        }
+
+        for (final Target target : binaries) {
+            if (propertiesPrefix != null) {
+                project.getProperties().setProperty(propertiesPrefix + "binary." + (target.getClassifier() == null ?
+                        "" : target.getClassifier() + '.') + "path", target.getOutput());
+            }
+
+            if (attach) {
+                final String classifier = target.getClassifier() == null ? attachClassifier : target.getClassifier();
+                if (!"none".equals(classifier) && classifier != null && !classifier.isEmpty()) {
+                    helper.attachArtifact(project, attachType, classifier, new File(target.getOutput()));
+                } else {
+                    helper.attachArtifact(project, attachType, new File(target.getOutput()));
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<String> installGraalAsync() {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final Thread installer = new Thread(() -> {
+            try {
+                final SdkmanGraalVMInstaller graalInstaller = createInstaller();
+                final Path graalHome = graalInstaller.install();
+                getLog().info("Using GRAAL: " + graalHome);
+                final String[] languages = findLanguages();
+                if (languages.length > 0) { // not extracted by default
+                    graalInstaller.ensureExtracted(languages);
+                }
+                result.complete(graalInstaller.installNativeImage().toAbsolutePath().toString());
+            } catch (final RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }, "arthur-graalvm-installer");
+        installer.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+        installer.start();
+        return result;
+    }
+
+    private String[] findLanguages() {
+        return Stream.concat(
+                ofNullable(customOptions).map(Collection::stream).orElseGet(Stream::empty),
+                ofNullable(targets).map(Collection::stream).orElseGet(Stream::empty)
+                        .flatMap(t -> ofNullable(t.getCustomOptions()).map(Collection::stream).orElseGet(Stream::empty)))
+                .filter(it -> it.startsWith("--language:"))
+                .map(it -> it.substring("--language:".length()))
+                .distinct()
+                .flatMap(language -> Stream.of("jre/languages/" + language + "/**", "languages/" + language + "/**"))
+                .toArray(String[]::new);
+    }
+
+    private String awaitGraalInstallation(final CompletableFuture<String> graalInstallation) {
+        final long start = System.nanoTime();
+        try {
+            return graalInstallation.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (RuntimeException.class.isInstance(cause)) {
+                throw RuntimeException.class.cast(cause);
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (waited > 0) {
+                getLog().info("Waited " + waited + "ms for GraalVM installation");
+            }
+        }
+    }
+
+    private void doExecute(final List<Target> binaries, final CompletableFuture<String> graalInstallation) {
         final Map<Artifact, Path> classpathEntries = findClasspathFiles().collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a));
 
         final ArthurNativeImageConfiguration configuration = getConfiguration(classpathEntries.values());
-        if (nativeImage == null) {
-            final SdkmanGraalVMInstaller graalInstaller = createInstaller();
-            final Path graalHome = graalInstaller.install();
-            getLog().info("Using GRAAL: " + graalHome);
-            configuration.setNativeImage(graalInstaller.installNativeImage().toAbsolutePath().toString());
-        }
 
         final URL[] urls = classpathEntries.values().stream()
                 .map(it -> {
@@ -438,6 +639,9 @@ public class NativeImageMojo extends ArthurMojo {
                         }
                     })
                     .collect(toList())));
+            if (sizeReport) {
+                prepareSizeReport(configuration, binaries);
+            }
             final AtomicBoolean finderLinked = new AtomicBoolean();
             MavenArthurExtension.with(
                     reflections, resources, bundles, dynamicProxies,
@@ -463,6 +667,11 @@ public class NativeImageMojo extends ArthurMojo {
                                     })
                                     .configuration(configuration)
                                     .workingDirectory(workdir.toPath().resolve("generated_configuration"))
+                                    .metricsListener("none".equals(metricsReport) ? null : metrics -> onMetrics(jsonb, metrics, binaries))
+                                    .maxConcurrentNativeImages(maxConcurrentNativeImages)
+                                    .targets(targets == null || targets.isEmpty() ? null : new ArrayList<>(binaries))
+                                    .pgo(createPgoConfiguration())
+                                    .nativeImageResolver(graalInstallation == null ? null : () -> awaitGraalInstallation(graalInstallation))
                                     .build()) {
                         @Override
                         protected Iterable<ArthurExtension> loadExtensions() {
@@ -476,25 +685,159 @@ public class NativeImageMojo extends ArthurMojo {
                         }
                     }
                             .run());
+            if (sizeReport) {
+                writeSizeReports(jsonb, binaries);
+            }
         } catch (final Exception e) {
             throw new IllegalStateException(e);
         } finally {
             thread.setContextClassLoader(oldLoader);
         }
+    }
 
-        if (propertiesPrefix != null) {
-            project.getProperties().setProperty(propertiesPrefix + "binary.path", output);
+    /**
+     * @return the profile guided optimization configuration if binaries must be built with PGO, null otherwise.
+     */
+    protected PgoConfiguration createPgoConfiguration() {
+        return null;
+    }
+
+    private List<Target> getTargets() {
+        if (targets == null || targets.isEmpty()) {
+            if (main == null) {
+                throw new IllegalArgumentException("No main configured, set `main` or `targets`");
+            }
+            final Target target = new Target();
+            target.setMain(main);
+            target.setOutput(output);
+            return singletonList(target);
         }
+        return targets.stream()
+                .map(target -> {
+                    if (target.getMain() == null) {
+                        throw new IllegalArgumentException("No main configured for target " + target);
+                    }
+                    if (target.getClassifier() == null) {
+                        final String simpleName = target.getMain().substring(target.getMain().lastIndexOf('.') + 1);
+                        target.setClassifier(simpleName.replace('$', '-').toLowerCase(ROOT));
+                    }
+                    if (target.getOutput() == null) {
+                        target.setOutput(new File(project.getBuild().getDirectory(),
+                                project.getArtifactId() + '-' + target.getClassifier() + ".graal.bin").getAbsolutePath());
+                    }
+                    return target;
+                })
+                .collect(toList());
+    }
 
-        if (attach) {
-            if (!"none".equals(attachClassifier) && attachClassifier != null && !attachClassifier.isEmpty()) {
-                helper.attachArtifact(project, attachType, attachClassifier, new File(output));
+    private void prepareSizeReport(final ArthurNativeImageConfiguration configuration, final List<Target> binaries) throws IOException {
+        Files.createDirectories(sizeReportDirectory.toPath());
+        for (final Target target : binaries) {
+            final Collection<String> options;
+            if (targets == null || targets.isEmpty()) {
+                if (configuration.getCustomOptions() == null) {
+                    configuration.setCustomOptions(new ArrayList<>());
+                }
+                options = configuration.getCustomOptions();
             } else {
-                helper.attachArtifact(project, attachType, new File(output));
+                if (target.getCustomOptions() == null) {
+                    target.setCustomOptions(new ArrayList<>());
+                }
+                options = target.getCustomOptions();
             }
+            options.add("-H:+DashboardCode");
+            options.add("-H:+DashboardHeap");
+            options.add("-H:+DashboardJson");
+            options.add("-H:DashboardDump=" + getDashboardDump(target).toAbsolutePath());
         }
     }
 
+    private void writeSizeReports(final Jsonb jsonb, final List<Target> binaries) throws IOException {
+        final Path registrations = workdir.toPath().resolve("generated_configuration").resolve(ConfigurationGenerator.REGISTRATIONS);
+        final Map<String, List<String>> origins;
+        if (Files.exists(registrations)) {
+            final Map<String, List<Map<String, Object>>> raw;
+            try (final Reader reader = Files.newBufferedReader(registrations)) {
+                raw = jsonb.fromJson(reader, Map.class);
+            }
+            origins = raw.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> e.getValue().stream()
+                    .map(origin -> String.valueOf(origin.get("extension")))
+                    .distinct()
+                    .collect(toList())));
+        } else {
+            origins = emptyMap();
+        }
+
+        final ImageSizeAnalyzer analyzer = new ImageSizeAnalyzer();
+        for (final Target target : binaries) {
+            final Path base = getDashboardDump(target);
+            final Optional<Path> dump = Stream.of(base, base.resolveSibling(base.getFileName() + ".dump"), base.resolveSibling(base.getFileName() + ".json"))
+                    .filter(Files::isRegularFile)
+                    .findFirst();
+            if (!dump.isPresent()) {
+                getLog().warn("No native-image dashboard dump found for '" + target.getOutput() + "', ensure your GraalVM version supports it");
+                continue;
+            }
+
+            final Map<String, Object> data;
+            try (final Reader reader = Files.newBufferedReader(dump.get())) {
+                data = jsonb.fromJson(reader, Map.class);
+            }
+            final ImageSizeReport report = analyzer.analyze(Paths.get(target.getOutput()).getFileName().toString(), data, origins, sizeReportTop);
+            final String name = base.getFileName().toString().replace(".dashboard", "");
+            final Path json = sizeReportDirectory.toPath().resolve(name + ".size.json");
+            try (final Writer writer = Files.newBufferedWriter(json)) {
+                jsonb.toJson(report, writer);
+            }
+            final Path html = sizeReportDirectory.toPath().resolve(name + ".size.html");
+            Files.write(html, analyzer.toHtml(report).getBytes(StandardCharsets.UTF_8));
+            getLog().info("Size report of '" + target.getOutput() + "' written in '" + html + "'");
+            report.getOrigins().stream().limit(5).forEach(origin ->
+                    getLog().info("  " + origin.getName() + ": " + (origin.getSize() / 1024) + "kB"));
+        }
+    }
+
+    private Path getDashboardDump(final Target target) {
+        return sizeReportDirectory.toPath().resolve(ofNullable(target.getClassifier()).orElse("main") + ".dashboard");
+    }
+
+    private void onMetrics(final Jsonb jsonb, final NativeImageMetrics metrics, final List<Target> binaries) {
+        final String classifier = binaries.stream()
+                .filter(it -> it.getOutput().equals(metrics.getOutput()))
+                .findFirst()
+                .map(Target::getClassifier)
+                .orElse(null);
+        if (propertiesPrefix != null) {
+            final Properties properties = project.getProperties();
+            final String prefix = propertiesPrefix + "metrics." + (classifier == null ? "" : classifier + '.');
+            metrics.getPhasesDurations().forEach((phase, duration) ->
+                    properties.setProperty(prefix + "phase." + phase + ".duration", Double.toString(duration)));
+            metrics.getPhasesMemory().forEach((phase, memory) ->
+                    properties.setProperty(prefix + "phase." + phase + ".memory", Double.toString(memory)));
+            ofNullable(metrics.getPeakMemory()).ifPresent(v -> properties.setProperty(prefix + "peakMemory", Double.toString(v)));
+            ofNullable(metrics.getReachableClasses()).ifPresent(v -> properties.setProperty(prefix + "reachableClasses", Long.toString(v)));
+            ofNullable(metrics.getReachableMethods()).ifPresent(v -> properties.setProperty(prefix + "reachableMethods", Long.toString(v)));
+            ofNullable(metrics.getImageSize()).ifPresent(v -> properties.setProperty(prefix + "imageSize", Long.toString(v)));
+            properties.setProperty(prefix + "attempt", Integer.toString(metrics.getAttempt()));
+            properties.setProperty(prefix + "waitTime", Long.toString(metrics.getWaitTime()));
+        }
+
+        final Path defaultReport = Paths.get(metricsReport);
+        final Path report = classifier == null ? defaultReport : defaultReport.resolveSibling(
+                classifier + '.' + defaultReport.getFileName().toString());
+        try {
+            if (report.getParent() != null && !Files.exists(report.getParent())) {
+                Files.createDirectories(report.getParent());
+            }
+            try (final Writer writer = Files.newBufferedWriter(report)) {
+                jsonb.toJson(metrics, writer);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        getLog().info("Native image metrics written in '" + report + "'");
+    }
+
     private Predicate<Artifact> createScanningFilter() {
         if (scanningExcludedArtifacts != null && scanningExcludedArtifacts.contains("*")) {
             return a -> false;
@@ -646,10 +989,19 @@ public class NativeImageMojo extends ArthurMojo {
                         throw new IllegalArgumentException(e);
                     }
                 });
+        if (configuration.getCustomOptions() == null) { // unset mojo parameter, keep a mutable list for targets and reports
+            configuration.setCustomOptions(new ArrayList<>());
+        }
         if (configuration.getClasspath() == null || configuration.getClasspath().isEmpty()) {
             configuration.setClasspath(classpathFiles.stream().map(Path::toAbsolutePath).map(Object::toString).collect(toList()));
         }
         configuration.setInheritIO(inheritIO);
+        configuration.setAutoSizing(autoSizing);
+        configuration.setBuildServer(buildServer);
+        configuration.setArgFile(argFile);
+        if (outOfMemoryRetries != null) {
+            configuration.setOutOfMemoryRetries(outOfMemoryRetries);
+        }
         return configuration;
     }
 
@@ -659,4 +1011,11 @@ public class NativeImageMojo extends ArthurMojo {
         }
         return field;
     }
+
+    @Data
+    @ToString(callSuper = true)
+    @EqualsAndHashCode(callSuper = true)
+    public static class Target extends NativeImageTarget {
+        private String classifier;
+    }
 }
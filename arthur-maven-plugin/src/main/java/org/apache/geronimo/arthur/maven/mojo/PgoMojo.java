@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import static java.util.stream.Collectors.joining;
+import static org.apache.maven.plugins.annotations.LifecyclePhase.PACKAGE;
+import static org.apache.maven.plugins.annotations.ResolutionScope.TEST;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.geronimo.arthur.impl.nativeimage.pgo.PgoConfiguration;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Builds the binary with profile guided optimization: an instrumented binary is built,
+ * a workload is executed against it to collect a profile and the binary is rebuilt with this profile.
+ * Instrumented binaries and profiles are cached by a fingerprint of the build inputs.
+ */
+@Mojo(name = "pgo", defaultPhase = PACKAGE, requiresDependencyResolution = TEST, threadSafe = true)
+public class PgoMojo extends NativeImageMojo {
+    /**
+     * Command exercising the instrumented binary, `${binary}` is replaced by the instrumented binary path.
+     * If not set (and `workloadMain` is not set either) the instrumented binary is executed without argument.
+     */
+    @Parameter(property = "arthur.pgo.workload")
+    private List<String> workload;
+
+    /**
+     * A main (from the test classpath) exercising the instrumented binary, it gets the instrumented binary path as first argument.
+     * It is launched with the JVM running maven.
+     */
+    @Parameter(property = "arthur.pgo.workloadMain")
+    private String workloadMain;
+
+    /**
+     * Seconds after which the workload is stopped, it is not considered as an error (for services running until stopped).
+     */
+    @Parameter(property = "arthur.pgo.timeout", defaultValue = "300")
+    private long workloadTimeout;
+
+    /**
+     * Where instrumented binaries and profiles are cached.
+     */
+    @Parameter(property = "arthur.pgo.cache", defaultValue = "${project.build.directory}/arthur_workdir/pgo")
+    private File pgoCache;
+
+    @Override
+    protected PgoConfiguration createPgoConfiguration() {
+        final PgoConfiguration configuration = new PgoConfiguration();
+        configuration.setCache(pgoCache.toPath());
+        configuration.setTimeout(workloadTimeout);
+        configuration.setInheritIO(inheritIO);
+        if (workload != null && !workload.isEmpty()) {
+            configuration.setWorkload(new ArrayList<>(workload));
+        } else if (workloadMain != null) {
+            final List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-cp");
+            try {
+                command.add(project.getTestClasspathElements().stream().collect(joining(File.pathSeparator)));
+            } catch (final DependencyResolutionRequiredException e) {
+                throw new IllegalStateException(e);
+            }
+            command.add(workloadMain);
+            command.add("${binary}");
+            configuration.setWorkload(command);
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import org.apache.geronimo.arthur.impl.nativeimage.graal.BuildServer;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Stops the native-image build server started by `arthur:native-image` when `buildServer` is enabled.
+ */
+@Mojo(name = "server-stop", threadSafe = true)
+public class ServerStopMojo extends ArthurMojo {
+    @Override
+    public void execute() {
+        if (new BuildServer(workdir.toPath().resolve("generated_configuration").resolve(BuildServer.STATE)).stop()) {
+            getLog().info("Stopped native-image build server");
+        } else {
+            getLog().info("No native-image build server to stop");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+import com.google.cloud.tools.jib.api.Containerizer;
+import com.google.cloud.tools.jib.api.InvalidImageReferenceException;
+import com.google.cloud.tools.jib.api.TarImage;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Builds the image as a tar (loadable with `docker load`) without any docker daemon nor registry.
+ */
+@Mojo(name = "tar", threadSafe = true)
+public class TarMojo extends JibMojo {
+    /**
+     * Where to write the image tar.
+     */
+    @Parameter(property = "arthur.tarOutput", defaultValue = "${project.build.directory}/${project.artifactId}-image.tar")
+    private File tarOutput;
+
+    @Override
+    protected Containerizer createContainer() throws InvalidImageReferenceException {
+        try {
+            Files.createDirectories(tarOutput.toPath().toAbsolutePath().getParent());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        setTarProperty();
+        return Containerizer.to(TarImage.at(tarOutput.toPath()).named(to));
+    }
+
+    @Override
+    protected boolean isUpToDate(final String imageId, final String digest) {
+        if (!tarOutput.isFile()) {
+            return false;
+        }
+        setTarProperty();
+        return true;
+    }
+
+    // jib writes the tar entries (config, layers and manifest) with the current time, use the image one instead
+    @Override
+    protected void onBuilt(final Instant creationTime) {
+        final Path tar = tarOutput.toPath();
+        final Path normalized = tar.resolveSibling(tar.getFileName() + ".tmp");
+        try (final TarArchiveInputStream input = new TarArchiveInputStream(new BufferedInputStream(Files.newInputStream(tar)));
+             final TarArchiveOutputStream output = new TarArchiveOutputStream(new BufferedOutputStream(Files.newOutputStream(normalized)))) {
+            output.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            output.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            TarArchiveEntry entry;
+            while ((entry = input.getNextTarEntry()) != null) {
+                entry.setModTime(creationTime.toEpochMilli());
+                output.putArchiveEntry(entry);
+                IOUtils.copy(input, output);
+                output.closeArchiveEntry();
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            Files.move(normalized, tar, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void setTarProperty() {
+        if (propertiesPrefix != null) {
+            project.getProperties().setProperty(propertiesPrefix + "image.tar", tarOutput.getAbsolutePath());
+        }
+    }
+}
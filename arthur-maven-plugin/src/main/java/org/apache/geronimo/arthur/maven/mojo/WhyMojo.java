@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbConfig;
+
+import org.apache.geronimo.arthur.impl.nativeimage.generator.ConfigurationGenerator;
+import org.apache.geronimo.arthur.impl.nativeimage.generator.RegistrationOrigin;
+import org.apache.geronimo.arthur.impl.nativeimage.generator.RegistrationOrigins;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Explains why a class, resource or bundle was registered by the last `arthur:native-image` execution.
+ */
+@Mojo(name = "why", threadSafe = true)
+public class WhyMojo extends ArthurMojo {
+    /**
+     * The class (nested classes match their enclosing class registration), resource or bundle to explain.
+     */
+    @Parameter(property = "arthur.why", required = true)
+    private String name;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        final Path registrations = workdir.toPath().resolve("generated_configuration").resolve(ConfigurationGenerator.REGISTRATIONS);
+        if (!Files.exists(registrations)) {
+            throw new MojoExecutionException("No '" + registrations + "', run arthur:native-image first");
+        }
+
+        final Type type = new HashMap<String, List<RegistrationOrigin>>() {
+        }.getClass().getGenericSuperclass();
+        final Map<String, List<RegistrationOrigin>> origins;
+        try (final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().setProperty("johnzon.cdi.activated", false));
+             final Reader reader = Files.newBufferedReader(registrations)) {
+            origins = jsonb.fromJson(reader, type);
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        final Map<String, Collection<RegistrationOrigin>> matching = new RegistrationOrigins(origins).why(name);
+        if (matching.isEmpty()) {
+            getLog().info("'" + name + "' was not registered by any extension");
+            return;
+        }
+        matching.forEach((key, value) -> {
+            getLog().info(key + ":");
+            value.forEach(origin -> getLog().info("  - " + origin.getExtension() +
+                    (origin.getDetail() != null ? " (" + origin.getDetail() + ")" : "")));
+        });
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.arthur.maven.mojo;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TarMojoTest {
+    @TempDir
+    Path workdir;
+
+    private Path binary;
+    private Path config;
+
+    @BeforeEach
+    void init() throws IOException {
+        binary = workdir.resolve("app.bin");
+        Files.write(binary, new byte[]{1, 2, 3});
+        config = Files.createDirectories(workdir.resolve("conf"));
+        Files.write(config.resolve("app.properties"), "a=b".getBytes());
+    }
+
+    @Test
+    void reproducible() throws IOException, InterruptedException {
+        final Path first = workdir.resolve("first.tar");
+        newMojo(first, false).execute();
+
+        Files.setLastModifiedTime(binary, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        Thread.sleep(1100); // tar headers have a second precision
+        final Path second = workdir.resolve("second.tar");
+        newMojo(second, false).execute();
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    @Test
+    void skipUnchanged() throws IOException {
+        final Path tar = workdir.resolve("image.tar");
+        newMojo(tar, true).execute();
+        final byte[] original = Files.readAllBytes(tar);
+
+        // same inputs: the tar is not rewritten
+        Files.write(tar, new byte[]{0});
+        newMojo(tar, true).execute();
+        assertArrayEquals(new byte[]{0}, Files.readAllBytes(tar));
+
+        // tar removed: rebuilt
+        Files.delete(tar);
+        newMojo(tar, true).execute();
+        assertArrayEquals(original, Files.readAllBytes(tar));
+
+        // one binary byte changed: rebuilt
+        Files.write(binary, new byte[]{1, 2, 4});
+        newMojo(tar, true).execute();
+        assertFalse(Arrays.equals(original, Files.readAllBytes(tar)));
+    }
+
+    private TarMojo newMojo(final Path tar, final boolean skipUnchanged) {
+        final MavenProject project = new MavenProject(new Model());
+        project.setFile(workdir.resolve("pom.xml").toFile());
+
+        final TarMojo mojo = new TarMojo();
+        set(mojo, "project", project);
+        set(mojo, "propertiesPrefix", "arthur.");
+        set(mojo, "from", "scratch");
+        set(mojo, "to", "app:1.0");
+        set(mojo, "entrypoint", singletonList("/app"));
+        set(mojo, "binarySource", binary.toFile());
+        set(mojo, "otherFiles", singletonList(config.toFile()));
+        set(mojo, "otherFilesLayering", "auto");
+        set(mojo, "includeNatives", singletonList("false"));
+        set(mojo, "includeDynamicLibraries", "false");
+        set(mojo, "nativeRootDir", "/native");
+        set(mojo, "cacertsTarget", "/certificates/cacerts");
+        set(mojo, "creationTimestamp", 1L);
+        set(mojo, "threads", 1);
+        set(mojo, "enableCache", true);
+        set(mojo, "applicationLayersCache", workdir.resolve("cache/application").toFile());
+        set(mojo, "baseLayersCache", workdir.resolve("cache/base").toFile());
+        set(mojo, "skipUnchangedImage", skipUnchanged);
+        set(mojo, "tarOutput", tar.toFile());
+        return mojo;
+    }
+
+    private void set(final Object instance, final String name, final Object value) {
+        Class<?> type = instance.getClass();
+        while (type != Object.class) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(instance, value);
+                return;
+            } catch (final NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + name);
+    }
+}
@@ -99,6 +99,42 @@ public interface ArthurExtension {
          */
         void register(DynamicProxyModel dynamicProxyModel);
 
+        /**
+         * Same as {@link #register(ClassReflectionModel)} but specifying why it is registered.
+         * @param classReflectionModel the instance to register.
+         * @param origin what triggered this registration (annotated element, configuration entry, ...).
+         */
+        default void register(final ClassReflectionModel classReflectionModel, final String origin) {
+            register(classReflectionModel);
+        }
+
+        /**
+         * Same as {@link #register(ResourceModel)} but specifying why it is registered.
+         * @param resourceModel the instance to register.
+         * @param origin what triggered this registration (annotated element, configuration entry, ...).
+         */
+        default void register(final ResourceModel resourceModel, final String origin) {
+            register(resourceModel);
+        }
+
+        /**
+         * Same as {@link #register(ResourceBundleModel)} but specifying why it is registered.
+         * @param resourceModel the instance to register.
+         * @param origin what triggered this registration (annotated element, configuration entry, ...).
+         */
+        default void register(final ResourceBundleModel resourceModel, final String origin) {
+            register(resourceModel);
+        }
+
+        /**
+         * Same as {@link #register(DynamicProxyModel)} but specifying why it is registered.
+         * @param dynamicProxyModel the instance to register.
+         * @param origin what triggered this registration (annotated element, configuration entry, ...).
+         */
+        default void register(final DynamicProxyModel dynamicProxyModel, final String origin) {
+            register(dynamicProxyModel);
+        }
+
         /**
          * Enables java security in the native image.
          */